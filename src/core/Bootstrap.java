@@ -110,37 +110,38 @@ public class Bootstrap {
 		Config.set("MAX_RUN_TIME", 5000);
 		Config.set("RUNS", 10);
 		Config.set("BASE_DIR", "output/lcr-100k-zuz");
+		Config.set("PARALLEL_RUNS", 4);
 
-		new Simulation(
-			new KlemmEguiluz(95000, 9, 1, 1, 0.23),
-			//new ErdosRenyi(4500, 40000),
-			//new BarabasiAlbert(4500, 9),
-			new ConstantTraffic(500*PER_SECOND, euro(2)),
-			new LandmarkCentricRouting(15*SECONDS, 48)
-		).transform(
-			new CapacitiesSetUniformly(euro(250)),
-			new GatewaysSelectRandomly(5000),
-			new ConsumersAdd(5000, 3, euro(100))
-		).measure(
-			new BasicGraphProperties(),
-			new CapacityDistribution(80),
-			new DegreeDistribution(),
-			//new GraphDiameter(),
-			new ClusteringCoefficient(),
-			new Imbalance(),
-			new ActiveChannels(),
-			new ActiveConsumers(),
-			new DepletedChannels(euro(1.99)),
-			new TimeAnnouncement().interval(20),
-			new TouchedChannels(),
-			new Fee().interval(15*SECONDS),
-			new OpenPayments().interval(15*SECONDS),
-			new PaymentDelay().interval(15*SECONDS),
-			new PaymentResults().interval(10*SECONDS),
-			new RouteLength().interval(15*SECONDS),		
-			new RouteSplit(),
-			new RoutingManagementTraffic().interval(20)
-		).start();
+		Simulation.start(() -> new Simulation(
+				new KlemmEguiluz(95000, 9, 1, 1, 0.23),
+				//new ErdosRenyi(4500, 40000),
+				//new BarabasiAlbert(4500, 9),
+				new ConstantTraffic(500*PER_SECOND, euro(2)),
+				new LandmarkCentricRouting(15*SECONDS, 48)
+			).transform(
+				new CapacitiesSetUniformly(euro(250)),
+				new GatewaysSelectRandomly(5000),
+				new ConsumersAdd(5000, 3, euro(100))
+			).measure(
+				new BasicGraphProperties(),
+				new CapacityDistribution(80),
+				new DegreeDistribution(),
+				//new GraphDiameter(),
+				new ClusteringCoefficient(),
+				new Imbalance(),
+				new ActiveChannels(),
+				new ActiveConsumers(),
+				new DepletedChannels(euro(1.99)),
+				new TimeAnnouncement().interval(20),
+				new TouchedChannels(),
+				new Fee().interval(15*SECONDS),
+				new OpenPayments().interval(15*SECONDS),
+				new PaymentDelay().interval(15*SECONDS),
+				new PaymentResults().interval(10*SECONDS),
+				new RouteLength().interval(15*SECONDS),		
+				new RouteSplit(),
+				new RoutingManagementTraffic().interval(20)
+			));
 	}
 	
 	public static void runSimLUR() {
@@ -307,6 +308,13 @@ public class Bootstrap {
 		Config.set("MAX_PATH_LENGTH", 15);
 		Config.set("MAX_FEE_PERCENT", 30);
 		Config.set("BITCOIN_EUROS", 4874f);
+		Config.set("EVENT_QUEUE", "calendar"); // or "heap"
+		Config.set("PARALLEL_RUNS", 1);
+		Config.set("ENGINE", "sequential"); // or "parallel", "validate"
+		Config.set("TREE_CONSTRUCTION", "traffic"); // or "hybrid", "instant"
+		Config.set("FEE_BOUNDS", "landmarks"); // or "hierarchy" (A* bounds of OptimalRouting)
+		Config.set("CONTROL_INTERVAL", 4096); // events between checks for control commands
+		Config.set("CONTROL_PORT", 0); // local port for control commands (besides stdin), 0 for none
 		
 		// output
 		Config.set("OUTPUT_DIR", "output/default");
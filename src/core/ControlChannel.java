@@ -0,0 +1,173 @@
+package core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import utility.global.Config;
+
+/**
+ * Control channel of running simulations. Background threads read commands
+ * line by line from stdin and, if CONTROL_PORT is set, from connections to
+ * that local port. Commands are published through a volatile version
+ * counter, which simulations only check every CONTROL_INTERVAL events
+ * (see Session). A command applies to all runs active when it arrives:
+ * q(uit) ends the runs (metrics are still finished), p(ause) and r(esume),
+ * s(tatus) prints their progress and f(lush) flushes their metric files.
+ * @author Josua
+ */
+class ControlChannel {
+
+	private static ControlChannel instance;
+
+	private volatile int version, quits, statusRequests, flushes;
+	private volatile boolean paused;
+
+	/** The channel of this process, started on first use **/
+	static synchronized ControlChannel get() {
+		if (instance == null) {
+			instance = new ControlChannel();
+			instance.listen(System.in, "control-stdin");
+			String port = Config.get("CONTROL_PORT");
+			if (port != null && Integer.parseInt(port) > 0)
+				instance.serve(Integer.parseInt(port));
+		}
+		return instance;
+	}
+
+	/** Starts following the commands (of a new run) **/
+	Session subscribe() {
+		return new Session();
+	}
+
+	/** Applies a command line **/
+	synchronized void command(String line) {
+		switch (line.trim().toLowerCase()) {
+		case "q": case "quit":
+			quits++;
+			break;
+		case "p": case "pause":
+			paused = true;
+			break;
+		case "r": case "resume":
+			paused = false;
+			break;
+		case "s": case "status":
+			statusRequests++;
+			break;
+		case "f": case "flush":
+			flushes++;
+			break;
+		case "":
+			return;
+		default:
+			System.out.println("Commands: q(uit), p(ause), r(esume), s(tatus), f(lush)");
+			return;
+		}
+		version++;
+		notifyAll();
+	}
+
+
+	// INTERNAL
+
+	private void listen(InputStream input, String name) {
+		Thread reader = new Thread(() -> {
+			try (BufferedReader lines = new BufferedReader(new InputStreamReader(input))) {
+				for (String line; (line = lines.readLine()) != null; )
+					command(line);
+			} catch (IOException e) {
+				// input closed, no more commands from it
+			}
+		}, name);
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	private void serve(int port) {
+		ServerSocket server;
+		try {
+			server = new ServerSocket(port, 4, InetAddress.getLoopbackAddress());
+		} catch (IOException e) {
+			System.out.println("Control port " + port + " not available: " + e.getMessage());
+			return;
+		}
+		Thread acceptor = new Thread(() -> {
+			while (true) {
+				try {
+					Socket socket = server.accept();
+					listen(socket.getInputStream(), "control-" + socket.getPort());
+				} catch (IOException e) {
+					return;
+				}
+			}
+		}, "control-server");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/** The commands a run has not yet handled **/
+	class Session {
+
+		private int version, quits, statusRequests, flushes;
+
+		private Session() {
+			synchronized (ControlChannel.this) {
+				version = ControlChannel.this.version;
+				quits = ControlChannel.this.quits;
+				statusRequests = ControlChannel.this.statusRequests;
+				flushes = ControlChannel.this.flushes;
+			}
+		}
+
+		/** Whether commands arrived since the last call (a single volatile read) **/
+		boolean hasCommands() {
+			int current = ControlChannel.this.version;
+			if (current == version) return false;
+			// commands arriving from now on change the version again
+			version = current;
+			return true;
+		}
+
+		boolean quit() {
+			int current = ControlChannel.this.quits;
+			boolean requested = current != quits;
+			quits = current;
+			return requested;
+		}
+
+		boolean status() {
+			int current = ControlChannel.this.statusRequests;
+			boolean requested = current != statusRequests;
+			statusRequests = current;
+			return requested;
+		}
+
+		boolean flush() {
+			int current = ControlChannel.this.flushes;
+			boolean requested = current != flushes;
+			flushes = current;
+			return requested;
+		}
+
+		boolean isPaused() {
+			return paused;
+		}
+
+		/** Blocks until the next command arrives **/
+		void await() {
+			synchronized (ControlChannel.this) {
+				try {
+					while (ControlChannel.this.version == version)
+						ControlChannel.this.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+}
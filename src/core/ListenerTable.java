@@ -0,0 +1,68 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import core.event.Event;
+
+/**
+ * Event listeners of a simulation, dispatched by event class. Every event
+ * class gets a dense id when it is first seen, and the listeners matching
+ * it (registered for the class or one of its supertypes, in registration
+ * order) are resolved once into an array, which is cached until another
+ * listener is added. Events without listeners cost one array read.
+ * @author Josua
+ */
+class ListenerTable {
+
+	private static final AtomicInteger classCount = new AtomicInteger();
+	private static final ClassValue<Integer> classIds = new ClassValue<Integer>() {
+		@Override
+		protected Integer computeValue(Class<?> type) {
+			return classCount.getAndIncrement();
+		}
+	};
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static final Consumer<Event>[] NONE = new Consumer[0];
+
+	private final List<Class<?>> classes = new ArrayList<>();
+	private final List<Consumer<Event>> listeners = new ArrayList<>();
+	/** resolved listeners by class id, null if not yet resolved **/
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Consumer<Event>[][] resolved = new Consumer[64][];
+
+	/** Adds a listener for events of a class and its subclasses **/
+	void add(Class<?> klass, Consumer<Event> listener) {
+		classes.add(klass);
+		listeners.add(listener);
+		Arrays.fill(resolved, null);
+	}
+
+	/** Notifies the listeners of an event **/
+	void notify(Event event) {
+		for (Consumer<Event> listener : get(event.getClass()))
+			listener.accept(event);
+	}
+
+	/** Listeners of an event class, including those of its supertypes **/
+	Consumer<Event>[] get(Class<?> klass) {
+		int id = classIds.get(klass);
+		if (id < resolved.length && resolved[id] != null)
+			return resolved[id];
+		return resolve(klass, id);
+	}
+
+	private Consumer<Event>[] resolve(Class<?> klass, int id) {
+		List<Consumer<Event>> matching = new ArrayList<>();
+		for (int i = 0; i < classes.size(); i++)
+			if (classes.get(i).isAssignableFrom(klass))
+				matching.add(listeners.get(i));
+		if (id >= resolved.length)
+			resolved = Arrays.copyOf(resolved, Math.max(2 * resolved.length, id + 1));
+		resolved[id] = matching.isEmpty() ? NONE : matching.toArray(NONE);
+		return resolved[id];
+	}
+}
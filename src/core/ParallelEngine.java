@@ -0,0 +1,309 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import core.event.CompactMessage;
+import core.event.Event;
+import core.event.EventQueue;
+import core.event.LocalEvent;
+import core.event.Message;
+import core.event.MessageSlab;
+
+/**
+ * Conservative (YAWNS-style) parallel event engine.
+ * Isolated local events (see LocalEvent.isIsolated()) and compact messages
+ * are collected into a
+ * safe window [t, t + lookahead) that ends at the next non-isolated event,
+ * and executed in parallel with the nodes partitioned across worker threads.
+ * Non-isolated events (payments, HTLCs, global events) and the timers of
+ * the timer wheel (like UpdateFees or Sampling) act as barriers and run
+ * sequentially.
+ * Events and messages scheduled inside a window are buffered per partition and merged
+ * into the queue in the order the sequential engine would have created
+ * them, so both engines execute the same events in the same order.
+ * @author Josua
+ */
+class ParallelEngine {
+
+	private final Simulation sim;
+	private final EventQueue queue;
+	private final MessageSlab messages;
+	private final long lookahead, maxRunTick;
+	private final int minWindow;
+	private final Partition[] partitions;
+	private final ExecutorService executor;
+	private final ThreadLocal<Partition> current = new ThreadLocal<>();
+	// events of the window, null for the messages of windowMessages (in order)
+	private final ArrayList<Event> window = new ArrayList<>();
+	private final MessageSlab windowMessages = new MessageSlab(null);
+	private final List<Future<?>> tasks = new ArrayList<>();
+	private long windowEnd;
+	private volatile boolean windowOpen;
+
+	/**
+	 * @param threads number of worker threads (and node partitions)
+	 * @param lookahead minimal delay of events scheduled by isolated events
+	 * @param minWindow windows with fewer events are run sequentially
+	 **/
+	public ParallelEngine(Simulation sim, EventQueue queue, MessageSlab messages,
+			long maxRunTick, int threads, long lookahead, int minWindow) {
+		this.sim = sim;
+		this.queue = queue;
+		this.messages = messages;
+		this.maxRunTick = maxRunTick;
+		this.lookahead = lookahead;
+		this.minWindow = minWindow;
+		this.partitions = new Partition[threads];
+		for (int i = 0; i < threads; i++)
+			partitions[i] = new Partition();
+		this.executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "engine-worker");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/** Runs the next event or window of events, returns false if the simulation ended **/
+	public boolean advance() {
+		Event head = queue.peek();
+		boolean message = messages.isBefore(head);
+		long next = message ? messages.tick(0) : (head == null) ? -1 : head.getTick();
+		long timer = sim.nextTimerTick();
+		if (timer >= 0 && timer < maxRunTick && (next < 0 || timer <= next)) {
+			sim.runTimers();
+			return true;
+		}
+		if (next < 0 || next >= maxRunTick) return false;
+		if (!message && !isIsolated(head)) {
+			sim.execute(queue.poll());
+			return true;
+		}
+		// timers are barriers as well
+		windowEnd = Math.min(next + lookahead, (timer >= 0) ? Math.min(timer, maxRunTick) : maxRunTick);
+		window.clear();
+		windowMessages.clear();
+		while (true) {
+			head = queue.peek();
+			if (messages.isBefore(head)) {
+				if (messages.tick(0) >= windowEnd) break;
+				window.add(null);
+				windowMessages.transfer(messages);
+			} else if (head != null && head.getTick() < windowEnd && isIsolated(head)) {
+				window.add(queue.poll());
+			} else {
+				break;
+			}
+		}
+		if (window.size() < minWindow) {
+			int m = 0;
+			for (Event event : window) {
+				if (event == null) {
+					sim.deliver(windowMessages, m++);
+				} else {
+					sim.execute(event);
+				}
+			}
+		} else {
+			runWindow();
+		}
+		return true;
+	}
+
+	/** Whether a window is currently being executed **/
+	public boolean isWindowOpen() {
+		return windowOpen;
+	}
+
+	/** The current tick of the calling worker **/
+	public long getTick() {
+		return partition().tick;
+	}
+
+	/** Buffers an event scheduled by the calling worker **/
+	public void schedule(Event event) {
+		if (event.getTick() < windowEnd)
+			throw new IllegalStateException("Lookahead violation: "
+				+ event.getName() + " scheduled inside the current window");
+		Partition p = partition();
+		p.scheduled.add(event);
+		p.scheduledBy.add(p.index);
+	}
+
+	/** Buffers a compact message sent by the calling worker **/
+	public void schedule(long tick, int type, Object context, int sender, int receiver, int arg, long value) {
+		if (tick < windowEnd)
+			throw new IllegalStateException("Lookahead violation: "
+				+ CompactMessage.name(type) + " sent inside the current window");
+		Partition p = partition();
+		p.messages.add(tick, type, context, sender, receiver, arg, value);
+		p.scheduled.add(null);
+		p.scheduledBy.add(p.index);
+	}
+
+	/** Buffers the completion of an event on the calling worker **/
+	public void completed(Event event) {
+		Partition p = partition();
+		p.completed.add(event);
+		p.completedBy.add(p.index);
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+
+	// INTERNAL
+
+	private void runWindow() {
+		for (Partition p : partitions)
+			p.clear();
+		for (int i = 0, m = 0; i < window.size(); i++) {
+			Event event = window.get(i);
+			int node = (event == null) ? windowMessages.node(m) : ((LocalEvent) event).getNode();
+			Partition p = partitions[node % partitions.length];
+			p.events.add(event);
+			p.indices.add(i);
+			p.records.add((event == null) ? m++ : -1);
+		}
+		windowOpen = true;
+		tasks.clear();
+		for (Partition p : partitions)
+			if (!p.events.isEmpty())
+				tasks.add(executor.submit(p));
+		try {
+			for (Future<?> task : tasks)
+				task.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			windowOpen = false;
+		}
+		// replay listeners and merge scheduled events in sequential order
+		sim.executed(window, windowMessages);
+		merge(p -> p.completed, p -> p.completedBy, (p, event) -> sim.eventCompleted(event));
+		merge(p -> p.scheduled, p -> p.scheduledBy, (p, event) -> {
+			if (event == null) {
+				messages.transfer(p.messages);
+			} else {
+				queue.add(event);
+			}
+		});
+	}
+
+	/** Merges the partitions' buffers by index of the causing window event **/
+	private void merge(Function<Partition, List<Event>> events,
+			Function<Partition, IntList> causes, BiConsumer<Partition, Event> action) {
+		int[] pos = new int[partitions.length];
+		while (true) {
+			int best = -1, bestCause = Integer.MAX_VALUE;
+			for (int i = 0; i < partitions.length; i++) {
+				IntList c = causes.apply(partitions[i]);
+				if (pos[i] < c.size && c.values[pos[i]] < bestCause) {
+					best = i;
+					bestCause = c.values[pos[i]];
+				}
+			}
+			if (best < 0) return;
+			action.accept(partitions[best], events.apply(partitions[best]).get(pos[best]++));
+		}
+	}
+
+	private Partition partition() {
+		Partition p = current.get();
+		if (p == null)
+			throw new IllegalStateException("Not called from an engine worker");
+		return p;
+	}
+
+	private static boolean isIsolated(Event event) {
+		return (event instanceof LocalEvent) && ((LocalEvent) event).isIsolated();
+	}
+
+	/** The events of one node partition in a window, and their buffered output **/
+	private class Partition implements Runnable {
+		private final List<Event> events = new ArrayList<>();
+		private final IntList indices = new IntList(), records = new IntList();
+		// scheduled events, null for the messages sent (in order)
+		private final List<Event> scheduled = new ArrayList<>(), completed = new ArrayList<>();
+		private final MessageSlab messages = new MessageSlab(null);
+		private final IntList scheduledBy = new IntList(), completedBy = new IntList();
+		private long tick;
+		private int index;
+
+		@Override
+		public void run() {
+			current.set(this);
+			try {
+				for (int i = 0; i < events.size(); i++) {
+					Event event = events.get(i);
+					index = indices.values[i];
+					if (event == null) {
+						tick = windowMessages.tick(records.values[i]);
+						windowMessages.deliver(records.values[i]);
+					} else {
+						tick = event.getTick();
+						event.prepareAndRun();
+					}
+				}
+			} finally {
+				current.remove();
+			}
+		}
+
+		private void clear() {
+			events.clear();
+			indices.size = 0;
+			records.size = 0;
+			scheduled.clear();
+			messages.clear();
+			completed.clear();
+			scheduledBy.size = 0;
+			completedBy.size = 0;
+		}
+	}
+
+	private static class IntList {
+		private int[] values = new int[64];
+		private int size;
+
+		private void add(int value) {
+			if (size == values.length)
+				values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+	}
+
+	/** Order-sensitive hash of an executed event, for comparing engines **/
+	static long trace(long hash, Event event) {
+		long h = hash * 0x9E3779B97F4A7C15L + event.getTick();
+		h = mix(h) + event.getName().hashCode();
+		if (event instanceof LocalEvent)
+			h = mix(h) + ((LocalEvent) event).getNode();
+		if (event instanceof Message)
+			h = mix(h) + ((Message) event).getSender();
+		return mix(h);
+	}
+
+	/** Order-sensitive hash of a delivered compact message, like a Message event **/
+	static long trace(long hash, MessageSlab messages, int i) {
+		long h = hash * 0x9E3779B97F4A7C15L + messages.tick(i);
+		h = mix(h) + CompactMessage.name(messages.type(i)).hashCode();
+		h = mix(h) + messages.node(i);
+		h = mix(h) + messages.sender(i);
+		return mix(h);
+	}
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
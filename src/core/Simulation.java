@@ -1,21 +1,30 @@
 package core;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import core.event.CompactMessage;
 import core.event.Event;
+import core.event.EventQueue;
+import core.event.Message;
+import core.event.MessageSlab;
+import core.event.TimerWheel;
 import graph.Graph;
 import graph.gen.GraphGenerator;
 import graph.transform.Transformation;
 import metric.Metric;
+import payment.Payment;
 import payment.fees.ExponentialFees;
 import payment.fees.FeePolicy;
 import payment.selector.AMPRouteSelector;
@@ -25,7 +34,7 @@ import plot.AbstractPlot;
 import routing.algorithm.RoutingAlgorithm;
 import routing.costs.AdvancedRoutingCosts;
 import routing.costs.RoutingCosts;
-import utility.NonBlockingBufferedReader;
+import routing.costs.WeightTable;
 import utility.global.Config;
 import utility.global.StopWatch;
 
@@ -38,21 +47,34 @@ public class Simulation {
 	private RoutingAlgorithm routing;
 	private Traffic traffic;
 	private RoutingCosts costs, costsInverse;
+	private WeightTable weights, weightsInverse;
 	private FeePolicy feePolicy;
 	private RouteSelector routeSelector;
 	private List<Metric> metrics;
 	private List<Transformation> transformations;
 	private List<AbstractPlot> plots;
-	private HashMap<Class<?>, List<Consumer<Event>>> beforeEventListeners;
-	private HashMap<Class<?>, List<Consumer<Event>>> afterEventListeners;
-	private PriorityQueue<Event> eventQueue;
+	private ListenerTable beforeEventListeners, afterEventListeners;
+	private List<List<CompactMessage.Handler<Object>>> messageListeners;
+	private EventQueue eventQueue;
+	private MessageSlab messages;
+	private TimerWheel timers;
+	private long nextTimer; // tick of the next timer (-1 if none), may be early after cancellations
 	private float time, maxRunTime;
-	private NonBlockingBufferedReader input;
+	private long tick, maxRunTick, eventCount;
+	private int paymentCount, paymentsCompleted;
+	private ParallelEngine engine;
+	private boolean tracing;
+	private long traceHash;
+	private ControlChannel.Session control;
+	private int controlInterval;
+	private long nextControlCheck, statusEvents, statusNanos;
 
 	public Simulation() {	
 		masterRandom = new Random(Config.getLong("RANDOM_SEED"));
 		maxRunTime = Config.getFloat("MAX_RUN_TIME");
-		input = new NonBlockingBufferedReader(System.in);
+		maxRunTick = Event.ticks(maxRunTime);
+		String interval = Config.get("CONTROL_INTERVAL");
+		controlInterval = (interval == null) ? 4096 : Integer.parseInt(interval);
 		metrics = new LinkedList<>();
 		transformations = new LinkedList<>();
 		plots = new LinkedList<>();
@@ -136,6 +158,15 @@ public class Simulation {
 		return costsInverse;
 	}
 	
+	/** Routing costs of all channels, kept up to date **/
+	public WeightTable weights() {
+		return weights;
+	}
+	
+	public WeightTable inverseWeights() {
+		return weightsInverse;
+	}
+	
 	public RouteSelector routeSelector() {
 		return routeSelector;
 	}
@@ -152,13 +183,79 @@ public class Simulation {
 		IntStream.range(0, runCount).forEach(i -> startRun(i, masterRandom.nextLong()));
 	}
 	
+	/**
+	 * Runs all runs, each on a fresh simulation created by the given factory.
+	 * With PARALLEL_RUNS > 1, up to that many runs are executed concurrently.
+	 * Seeds and output are the same as with start().
+	 **/
+	public static void start(Supplier<Simulation> factory) {
+		Simulation first = factory.get();
+		int runCount = Config.getInt("RUNS");
+		first.storeConfiguration();
+		long[] seeds = new long[runCount];
+		for (int i = 0; i < runCount; i++)
+			seeds[i] = first.masterRandom.nextLong();
+		String parallel = Config.get("PARALLEL_RUNS");
+		int threads = Math.min(runCount, (parallel == null) ? 1 : Integer.parseInt(parallel));
+		if (threads <= 1) {
+			for (int i = 0; i < runCount; i++)
+				((i == 0) ? first : factory.get()).startRun(i, seeds[i]);
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> runs = new LinkedList<>();
+			for (int i = 0; i < runCount; i++) {
+				int index = i;
+				Simulation sim = (i == 0) ? first : null;
+				runs.add(executor.submit(() ->
+					((sim != null) ? sim : factory.get()).startRun(index, seeds[index])));
+			}
+			for (Future<?> run : runs)
+				run.get();
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
 	public void startRun(int index, long seed) {
-		Config.set("OUTPUT_DIR", Config.get("BASE_DIR") + "/run" + index);
+		Config.setLocal("OUTPUT_DIR", Config.get("BASE_DIR") + "/run" + index);
+		try {
+			String mode = Config.get("ENGINE");
+			if ("validate".equals(mode)) {
+				long expected = run(seed, false, true);
+				long actual = run(seed, true, true);
+				if (expected != actual)
+					throw new IllegalStateException(String.format(
+						"Trace mismatch: sequential %016x, parallel %016x", expected, actual));
+				System.out.println(String.format(" (Trace validated: %016x)", actual));
+			} else {
+				run(seed, "parallel".equals(mode), false);
+			}
+		} finally {
+			Config.clearLocal();
+		}
+	}
+	
+	/** Executes a run, returns the trace hash (if tracing) **/
+	private long run(long seed, boolean parallel, boolean trace) {
 		new File(Config.get("OUTPUT_DIR")).mkdirs();
 		time = 0;
-		beforeEventListeners = new HashMap<>();
-		afterEventListeners = new HashMap<>();
-		eventQueue = new PriorityQueue<Event>();
+		tick = 0;
+		eventCount = 0;
+		paymentCount = 0;
+		paymentsCompleted = 0;
+		tracing = trace;
+		traceHash = 0;
+		beforeEventListeners = new ListenerTable();
+		afterEventListeners = new ListenerTable();
+		messageListeners = new ArrayList<>();
+		eventQueue = EventQueue.create();
+		messages = new MessageSlab(eventQueue);
+		timers = new TimerWheel();
+		nextTimer = -1;
 		
 		Random runRandom = new Random(seed);
 		List<Component> comp = new LinkedList<>(Arrays.asList(
@@ -175,6 +272,11 @@ public class Simulation {
 		feePolicy.prepare();
 		StopWatch.measure();	
 		
+		weights = new WeightTable(graph, costs);
+		weightsInverse = new WeightTable(graph, costsInverse);
+		feePolicy.onFeeUpdate(ch -> { weights.update(ch); weightsInverse.update(ch); });
+		graph.onChannelUpdate(ch -> { weights.update(ch); weightsInverse.update(ch); });
+		
 		StopWatch.start("[Init Routing]");	
 		routing.prepare();
 		StopWatch.measure();
@@ -188,14 +290,32 @@ public class Simulation {
 		StopWatch.measure();
 
 		StopWatch.start("[Run Simulation]");
-		while (advance());
-		StopWatch.measure();
+		control = ControlChannel.get().subscribe();
+		nextControlCheck = controlInterval;
+		statusEvents = 0;
+		statusNanos = System.nanoTime();
+		if (parallel) {
+			String threads = Config.get("ENGINE_THREADS");
+			engine = new ParallelEngine(this, eventQueue, messages, maxRunTick,
+				(threads == null) ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(threads),
+				Event.ticks(Message.STANDARD_PROPAGATION_DELAY), 64);
+		}
+		try {
+			while (advance());
+		} finally {
+			if (engine != null) engine.shutdown();
+			engine = null;
+		}
+		double runtime = StopWatch.measure();
+		System.out.println(String.format(" (Events: %d, %.0f events/s, %s%s)",
+			eventCount, eventCount / runtime * 1000, eventQueue, parallel ? ", parallel" : ""));
 		
 		StopWatch.start("[Finish Metrics]");
 		metrics.stream().forEach(m -> m.finish());
 		StopWatch.measure();
 		
 		startPlotting();
+		return traceHash;
 	}
 	
 	public void storeConfiguration() {
@@ -223,25 +343,63 @@ public class Simulation {
 
 	/** Adds an event **/
 	public void addEvent(Event event) {
-		eventQueue.add(event);
+		if (engine != null && engine.isWindowOpen()) {
+			engine.schedule(event);
+		} else {
+			eventQueue.add(event);
+		}
 	}
 	
-	/** Get notified before a certain event subtype has run **/
+	/**
+	 * Sends a compact message of a registered type (see CompactMessage)
+	 * from a node to a neighbor, arriving after the standard propagation delay
+	 **/
+	public void sendMessage(int type, Object context, int sender, int receiver, int arg, long value) {
+		long arrival = getTick() + Event.ticks(Message.STANDARD_PROPAGATION_DELAY);
+		if (engine != null && engine.isWindowOpen()) {
+			engine.schedule(arrival, type, context, sender, receiver, arg, value);
+		} else {
+			messages.add(arrival, type, context, sender, receiver, arg, value);
+		}
+	}
+	
+	/** Adds an event to the timer wheel (see Event.afterTimer) **/
+	public void addTimer(Event event) {
+		if (engine != null && engine.isWindowOpen()) {
+			engine.schedule(event);
+			return;
+		}
+		timers.add(event);
+		if (nextTimer < 0 || event.getTick() < nextTimer)
+			nextTimer = event.getTick();
+	}
+	
+	/** Drops a cancelled event from the queue (inside a parallel window it is skipped later) **/
+	public void cancelEvent(Event event) {
+		if ((engine == null || !engine.isWindowOpen()) && !timers.remove(event))
+			eventQueue.remove(event);
+	}
+	
+	/** Get notified before an event of a certain type (or a subtype) has run **/
 	@SuppressWarnings("unchecked")
 	public <T extends Event> void beforeEvent(Class<T> klass, Consumer<T> listener) {
-		List<Consumer<Event>> listeners = beforeEventListeners.get(klass);
-		if (listeners == null) listeners = new LinkedList<>();
-		listeners.add((Consumer<Event>) listener);
-		beforeEventListeners.put(klass, listeners);
+		beforeEventListeners.add(klass, (Consumer<Event>) listener);
 	}
 	
-	/** Get notified after a certain event subtype was completed **/
+	/** Get notified after an event of a certain type (or a subtype) was completed **/
 	@SuppressWarnings("unchecked")
 	public <T extends Event> void afterEvent(Class<T> klass, Consumer<T> listener) {
-		List<Consumer<Event>> listeners = afterEventListeners.get(klass);
-		if (listeners == null) listeners = new LinkedList<>();
-		listeners.add((Consumer<Event>) listener);
-		afterEventListeners.put(klass, listeners);
+		afterEventListeners.add(klass, (Consumer<Event>) listener);
+	}
+	
+	/** Get notified before a compact message of a certain type arrives **/
+	@SuppressWarnings("unchecked")
+	public void beforeMessage(int type, CompactMessage.Handler<?> listener) {
+		while (messageListeners.size() <= type)
+			messageListeners.add(null);
+		if (messageListeners.get(type) == null)
+			messageListeners.set(type, new LinkedList<>());
+		messageListeners.get(type).add((CompactMessage.Handler<Object>) listener);
 	}
 
 	
@@ -249,26 +407,143 @@ public class Simulation {
 	// INTERNAL
 	
 	private boolean advance() {
-		if ("q".equals(input.readLine())) {
-			System.out.println("Quitting...");
+		if (eventCount >= nextControlCheck && !control())
 			return false;
-		}
-		Event event = eventQueue.poll();
-		if (event != null && event.getTime() < maxRunTime) {
-			time = event.getTime();
-			List<Consumer<Event>> listeners = beforeEventListeners.get(event.getClass());
-			if (listeners != null)
-				listeners.forEach(l -> l.accept(event));
-			event.prepareAndRun();
+		if (engine != null)
+			return engine.advance();
+		Event head = eventQueue.peek();
+		boolean message = messages.isBefore(head);
+		long next = message ? messages.tick(0) : (head == null) ? -1 : head.getTick();
+		if (nextTimer >= 0 && nextTimer < maxRunTick && (next < 0 || nextTimer <= next)) {
+			runTimers();
 			return true;
 		}
-		return false;
+		if (next < 0 || next >= maxRunTick) return false;
+		if (message) {
+			deliver(messages, 0);
+			messages.poll();
+		} else {
+			execute(eventQueue.poll());
+		}
+		return true;
+	}
+	
+	/** Runs an event taken from the queue **/
+	void execute(Event event) {
+		tick = event.getTick();
+		time = event.getTime();
+		eventCount++;
+		if (tracing)
+			traceHash = ParallelEngine.trace(traceHash, event);
+		beforeEventListeners.notify(event);
+		event.prepareAndRun();
+	}
+	
+	/** Delivers the i-th message of a slab **/
+	void deliver(MessageSlab slab, int i) {
+		tick = slab.tick(i);
+		time = Event.seconds(tick);
+		eventCount++;
+		if (tracing)
+			traceHash = ParallelEngine.trace(traceHash, slab, i);
+		notifyMessage(slab, i);
+		slab.deliver(i);
+	}
+	
+	/**
+	 * Accounts for events the parallel engine has run, notifying listeners afterwards
+	 * (null entries are the messages of the slab, in order)
+	 **/
+	void executed(List<Event> events, MessageSlab slab) {
+		int m = 0;
+		for (Event event : events) {
+			eventCount++;
+			if (event == null) {
+				if (tracing)
+					traceHash = ParallelEngine.trace(traceHash, slab, m);
+				notifyMessage(slab, m++);
+				continue;
+			}
+			if (tracing)
+				traceHash = ParallelEngine.trace(traceHash, event);
+			beforeEventListeners.notify(event);
+		}
+		Event last = events.get(events.size() - 1);
+		tick = (last == null) ? slab.tick(m - 1) : last.getTick();
+		time = Event.seconds(tick);
+	}
+	
+	private void notifyMessage(MessageSlab slab, int i) {
+		int type = slab.type(i);
+		if (type >= messageListeners.size() || messageListeners.get(type) == null) return;
+		for (CompactMessage.Handler<Object> l : messageListeners.get(type))
+			l.receive(slab.context(i), slab.node(i), slab.sender(i), slab.arg(i), slab.value(i));
 	}
 
+	/** Handles commands of the control channel, returns false to quit the run **/
+	private boolean control() {
+		nextControlCheck = eventCount + controlInterval;
+		if (!control.hasCommands()) return true;
+		boolean pausing = false;
+		while (true) {
+			if (control.quit()) {
+				System.out.println("Quitting...");
+				return false;
+			}
+			if (control.status())
+				printStatus();
+			if (control.flush()) {
+				metrics.forEach(m -> m.flush());
+				System.out.println(" (Metrics flushed)");
+			}
+			if (!control.isPaused()) break;
+			if (!pausing)
+				System.out.println("Paused (r to resume)...");
+			pausing = true;
+			control.await();
+			control.hasCommands();
+		}
+		if (pausing) {
+			System.out.println("Resumed");
+			statusNanos = System.nanoTime();
+			statusEvents = eventCount;
+		}
+		return true;
+	}
+	
+	/** Prints the progress of the run, with the event rate since the last status **/
+	private void printStatus() {
+		long now = System.nanoTime();
+		double rate = (eventCount - statusEvents) / ((now - statusNanos) / 1e9);
+		statusNanos = now;
+		statusEvents = eventCount;
+		System.out.println(String.format(" (%s: %.2f s, %d events, %.0f events/s, queue: %d, open payments: %d)",
+			Config.get("OUTPUT_DIR"), time, eventCount, rate,
+			eventQueue.size() + messages.size() + timers.size(), paymentCount - paymentsCompleted));
+	}
+	
+	/** Tick of the next timer on the wheel, -1 if none **/
+	long nextTimerTick() {
+		return nextTimer;
+	}
+	
+	/** Runs the timers due at the next timer tick (they run before queued events of the same tick) **/
+	void runTimers() {
+		long due = nextTimer;
+		for (Event timer; (timer = timers.poll(due)) != null; )
+			if (!timer.isCancelled())
+				execute(timer);
+		nextTimer = timers.nextTick();
+	}
+	
 	public void eventCompleted(Event event) {
-		List<Consumer<Event>> listeners = afterEventListeners.get(event.getClass());
-		if (listeners != null)
-			listeners.forEach(l -> l.accept(event));
+		if (engine != null && engine.isWindowOpen()) {
+			engine.completed(event);
+			return;
+		}
+		if (event instanceof Payment)
+			paymentsCompleted++;
+		afterEventListeners.notify(event);
 	}
 	
 	// START ALTERNATIVES (only generate, only plot)
@@ -292,8 +567,21 @@ public class Simulation {
 	}
 	
 	public float getTime() {
+		if (engine != null && engine.isWindowOpen())
+			return Event.seconds(engine.getTick());
 		return time;
 	}
+	
+	public long getTick() {
+		if (engine != null && engine.isWindowOpen())
+			return engine.getTick();
+		return tick;
+	}
+	
+	/** Returns a payment ID, unique within the current run **/
+	public int nextPaymentID() {
+		return paymentCount++;
+	}
 
 	public String printProperties() {
 		String res = "-Generator: " + generator + "\n"
@@ -0,0 +1,208 @@
+package core.event;
+
+/**
+ * Calendar queue (R. Brown, 1988) with O(1) amortized enqueue and dequeue.
+ * Events are hashed by tick into buckets of a fixed width, each holding a
+ * sorted doubly-linked list. Dequeuing walks the buckets like days of a
+ * calendar year. The number of buckets follows the queue size, and the
+ * bucket width is re-estimated from the spacing of the next events
+ * whenever the calendar is resized. Cancelled events are unlinked directly.
+ * @author Josua
+ */
+public class CalendarEventQueue extends EventQueue {
+
+	private static final int MIN_BUCKETS = 16;
+	private static final int SAMPLE_SIZE = 25;
+	
+	private Event[] heads, tails;
+	private int mask, size;
+	/** bucket width in ticks **/
+	private long width = Event.TICKS_PER_SECOND / 100;
+	/** bucket of the last dequeued event, and the end of its current window **/
+	private int current;
+	private long top;
+	/** no event in the queue is earlier than this **/
+	private long floor;
+
+	public CalendarEventQueue() {
+		allocate(MIN_BUCKETS);
+		seek(0);
+	}
+	
+	@Override
+	protected void insert(Event event) {
+		link(event);
+		size++;
+		if (event.tick < top - width) {
+			// before the scan position (in the past, or skipped by peek), restart the scan there
+			seek(event.tick);
+		}
+		if (size > 2 * heads.length)
+			resize(heads.length * 2);
+	}
+
+	@Override
+	protected Event pollFirst() {
+		if (size == 0) return null;
+		Event event = find();
+		unlink(event);
+		size--;
+		floor = event.tick;
+		shrink();
+		return event;
+	}
+
+	@Override
+	protected Event peekFirst() {
+		return (size == 0) ? null : find();
+	}
+	
+	/** Unlinks a cancelled event from its bucket (O(1)) **/
+	@Override
+	public void remove(Event event) {
+		if (event.prev == null && event.next == null && heads[bucket(event.tick)] != event) return;
+		unlink(event);
+		size--;
+		shrink();
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public String toString() {
+		return "CalendarEventQueue";
+	}
+	
+	
+	// INTERNAL
+	
+	private void shrink() {
+		if (size < heads.length / 2 && heads.length > MIN_BUCKETS)
+			resize(heads.length / 2);
+	}
+	
+	/** Finds the earliest event, moving the scan position to its bucket **/
+	private Event find() {
+		int i = current;
+		long t = top;
+		for (int n = 0; n < heads.length; n++) {
+			Event head = heads[i];
+			if (head != null && head.tick < t) {
+				current = i;
+				top = t;
+				return head;
+			}
+			i = (i + 1) & mask;
+			t += width;
+		}
+		// nothing within a whole year, jump directly to the earliest event
+		Event min = null;
+		for (Event head : heads)
+			if (head != null && (min == null || head.compareTo(min) < 0))
+				min = head;
+		seek(min.tick);
+		return min;
+	}
+	
+	private void seek(long tick) {
+		floor = tick;
+		current = bucket(tick);
+		top = (tick / width + 1) * width;
+	}
+	
+	private int bucket(long tick) {
+		return (int) ((tick / width) & mask);
+	}
+	
+	/** Inserts into the sorted bucket list, searching from its tail **/
+	private void link(Event event) {
+		int i = bucket(event.tick);
+		Event prev = tails[i];
+		while (prev != null && prev.compareTo(event) > 0)
+			prev = prev.prev;
+		event.prev = prev;
+		if (prev == null) {
+			event.next = heads[i];
+			heads[i] = event;
+		} else {
+			event.next = prev.next;
+			prev.next = event;
+		}
+		if (event.next == null) {
+			tails[i] = event;
+		} else {
+			event.next.prev = event;
+		}
+	}
+	
+	private void unlink(Event event) {
+		int i = bucket(event.tick);
+		if (event.prev == null) {
+			heads[i] = event.next;
+		} else {
+			event.prev.next = event.next;
+		}
+		if (event.next == null) {
+			tails[i] = event.prev;
+		} else {
+			event.next.prev = event.prev;
+		}
+		event.prev = event.next = null;
+	}
+	
+	private void allocate(int buckets) {
+		heads = new Event[buckets];
+		tails = new Event[buckets];
+		mask = buckets - 1;
+	}
+	
+	private void resize(int buckets) {
+		long newWidth = estimateWidth();
+		Event[] old = heads;
+		allocate(buckets);
+		width = newWidth;
+		for (Event event : old) {
+			while (event != null) {
+				Event next = event.next;
+				link(event);
+				event = next;
+			}
+		}
+		seek(floor);
+	}
+	
+	/** Three times the average separation of the next events, ignoring outliers **/
+	private long estimateWidth() {
+		int samples = Math.min(size, SAMPLE_SIZE);
+		if (samples < 2) return width;
+		int savedCurrent = current;
+		long savedTop = top, savedFloor = floor;
+		long[] ticks = new long[samples];
+		Event[] sample = new Event[samples];
+		for (int k = 0; k < samples; k++) {
+			sample[k] = find();
+			ticks[k] = sample[k].tick;
+			unlink(sample[k]);
+		}
+		for (Event event : sample)
+			link(event);
+		current = savedCurrent;
+		top = savedTop;
+		floor = savedFloor;
+		
+		double average = (ticks[samples - 1] - ticks[0]) / (double) (samples - 1);
+		long sum = 0;
+		int count = 0;
+		for (int k = 1; k < samples; k++) {
+			long gap = ticks[k] - ticks[k - 1];
+			if (gap <= 2 * average) {
+				sum += gap;
+				count++;
+			}
+		}
+		return (sum == 0) ? width : Math.max(1, 3 * sum / count);
+	}
+}
@@ -0,0 +1,53 @@
+package core.event;
+
+import java.util.Arrays;
+
+/**
+ * Registry of compact message types. A compact message is a message of a
+ * registered type from one node to a neighbor, with a context object (e.g.
+ * the protocol instance), an int and a long field. It is stored in the
+ * primitive arrays of a MessageSlab instead of an event object, and on
+ * arrival dispatched to the handler of its type. Compact messages are
+ * isolated (see LocalEvent.isIsolated()), i.e. handlers may only touch the
+ * state of the receiving node. Send them with Simulation.sendMessage().
+ * @author Josua
+ */
+public final class CompactMessage {
+
+	/** Handles the arrival of a compact message at a node **/
+	public interface Handler<T> {
+		void receive(T context, int node, int sender, int arg, long value);
+	}
+
+	private static volatile Handler<?>[] handlers = new Handler<?>[0];
+	private static volatile String[] names = new String[0];
+
+	private CompactMessage() {
+	}
+
+	/** Registers a message type (e.g. in a static initializer), returns its type id **/
+	public static synchronized <T> int register(String name, Handler<T> handler) {
+		int type = handlers.length;
+		Handler<?>[] h = Arrays.copyOf(handlers, type + 1);
+		String[] n = Arrays.copyOf(names, type + 1);
+		h[type] = handler;
+		n[type] = name;
+		names = n;
+		handlers = h;
+		return type;
+	}
+
+	/** Number of registered types **/
+	public static int types() {
+		return handlers.length;
+	}
+
+	public static String name(int type) {
+		return names[type];
+	}
+
+	@SuppressWarnings("unchecked")
+	static void dispatch(int type, Object context, int node, int sender, int arg, long value) {
+		((Handler<Object>) handlers[type]).receive(context, node, sender, arg, value);
+	}
+}
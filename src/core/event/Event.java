@@ -8,9 +8,20 @@ import core.Simulation;
  */
 public abstract class Event implements Comparable<Event> {
 
+	/** Simulation ticks per second of simulation time **/
+	public static final long TICKS_PER_SECOND = 1000000;
+	
 	/** When the event should be triggered (in simulation time) **/
 	protected float time;	
 	protected Simulation sim;
+	/** When the event should be triggered (in ticks), and its insertion order for ties **/
+	long tick, seq;
+	/** Links used by the event queue **/
+	Event prev, next;
+	/** Whether the event was cancelled before it ran **/
+	boolean cancelled;
+	/** Whether the event is pending on the timer wheel **/
+	boolean timer;
 	
 	/** Method that is executed when the event is triggered **/
 	public void prepareAndRun() {
@@ -24,23 +35,54 @@ public abstract class Event implements Comparable<Event> {
 	public abstract void run();
 
 	
-	// SCHEDULING
+	// SCHEDULING (returns the event, e.g. as a handle to cancel it)
 	
 	/** Schedules the event absolutely **/
-	public void at(float time, Simulation sim) {
+	public Event at(float time, Simulation sim) {
+		return atTick(ticks(time), sim);
+	}
+	
+	/** Schedules the event absolutely, in ticks **/
+	public Event atTick(long tick, Simulation sim) {
 		this.sim = sim;
-		this.time = time;
+		this.tick = tick;
+		this.time = seconds(tick);
 		sim.addEvent(this);
+		return this;
 	}
 	
 	/** Schedules the event to be run immediately **/
-	public void now(Simulation sim) {
-		at(sim.getTime(), sim);
+	public Event now(Simulation sim) {
+		return atTick(sim.getTick(), sim);
 	}
 	
 	/** Schedules the event relatively **/
-	public void after(float time, Simulation sim) {
-		at(sim.getTime() + time, sim);
+	public Event after(float time, Simulation sim) {
+		return atTick(sim.getTick() + ticks(time), sim);
+	}
+	
+	/** Schedules the event relatively on the timer wheel (for periodic and coarse-grained timers) **/
+	public Event afterTimer(float time, Simulation sim) {
+		this.sim = sim;
+		this.tick = sim.getTick() + ticks(time);
+		this.time = seconds(tick);
+		sim.addTimer(this);
+		return this;
+	}
+	
+	/**
+	 * Cancels a scheduled event (e.g. a timeout), so that it will not run.
+	 * The queue drops it right away if it can, otherwise when it comes up.
+	 * Has no effect on events which already ran.
+	 */
+	public void cancel() {
+		if (cancelled || sim == null) return;
+		cancelled = true;
+		sim.cancelEvent(this);
+	}
+	
+	public boolean isCancelled() {
+		return cancelled;
 	}
 
 	
@@ -57,14 +99,30 @@ public abstract class Event implements Comparable<Event> {
 		return time;
 	}
 	
+	public long getTick() {
+		return tick;
+	}
+	
 	public String getName() {
 		//return MethodHandles.lookup().lookupClass().getName();
 		return getClass().getName();
 	}
 	
+	/** Orders by tick, then by insertion (FIFO) **/
 	@Override
 	public int compareTo(Event e) {
-		return (time == e.time) ? 0 : (time > e.time) ? 1 : -1;
+		if (tick != e.tick) return (tick > e.tick) ? 1 : -1;
+		return (seq == e.seq) ? 0 : (seq > e.seq) ? 1 : -1;
+	}
+	
+	/** Converts simulation time to ticks **/
+	public static long ticks(double seconds) {
+		return Math.round(seconds * TICKS_PER_SECOND);
+	}
+	
+	/** Converts ticks to simulation time **/
+	public static float seconds(long ticks) {
+		return (float) (ticks / (double) TICKS_PER_SECOND);
 	}
 	
 	/** Creates a simple event from a lamda **/
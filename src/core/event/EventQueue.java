@@ -0,0 +1,72 @@
+package core.event;
+
+import utility.global.Config;
+
+/**
+ * Pending event set of a simulation, ordered by tick.
+ * Events at the same tick are returned in the order they were added (FIFO).
+ * @author Josua
+ */
+public abstract class EventQueue {
+
+	private long sequence;
+	
+	/** Adds an event, stamping it with its insertion sequence number **/
+	public void add(Event event) {
+		event.seq = nextSequence();
+		insert(event);
+	}
+	
+	/** Next insertion sequence number (shared with the MessageSlab) **/
+	long nextSequence() {
+		return sequence++;
+	}
+	
+	/** Removes and returns the next event, or null if the queue is empty **/
+	public Event poll() {
+		Event event;
+		while ((event = pollFirst()) != null && event.cancelled);
+		return event;
+	}
+	
+	/** Returns the next event without removing it, or null if the queue is empty **/
+	public Event peek() {
+		Event event;
+		while ((event = peekFirst()) != null && event.cancelled)
+			pollFirst();
+		return event;
+	}
+	
+	/**
+	 * Removes a cancelled event. By default it stays queued until it comes
+	 * up and is skipped (lazy deletion).
+	 */
+	public void remove(Event event) {
+	}
+	
+	/** Number of queued events, including cancelled ones not yet dropped **/
+	public abstract int size();
+	
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+	
+	/** Inserts an already stamped event **/
+	protected abstract void insert(Event event);
+	
+	/** Removes and returns the earliest event (cancelled or not) **/
+	protected abstract Event pollFirst();
+	
+	/** Returns the earliest event (cancelled or not) **/
+	protected abstract Event peekFirst();
+	
+	/** Creates the queue selected by the EVENT_QUEUE setting ("calendar" or "heap") **/
+	public static EventQueue create() {
+		String type = Config.get("EVENT_QUEUE");
+		if (type == null || type.equals("calendar"))
+			return new CalendarEventQueue();
+		if (type.equals("heap"))
+			return new HeapEventQueue();
+		throw new IllegalArgumentException("Unknown event queue: " + type);
+	}
+}
@@ -0,0 +1,39 @@
+package core.event;
+
+import java.util.PriorityQueue;
+
+/**
+ * Binary heap event queue (O(log n) per operation).
+ * Kept for comparison with the calendar queue. Cancelled events are
+ * dropped lazily.
+ * @author Josua
+ */
+public class HeapEventQueue extends EventQueue {
+
+	private PriorityQueue<Event> heap = new PriorityQueue<>();
+	
+	@Override
+	protected void insert(Event event) {
+		heap.add(event);
+	}
+
+	@Override
+	protected Event pollFirst() {
+		return heap.poll();
+	}
+
+	@Override
+	protected Event peekFirst() {
+		return heap.peek();
+	}
+
+	@Override
+	public int size() {
+		return heap.size();
+	}
+	
+	@Override
+	public String toString() {
+		return "HeapEventQueue";
+	}
+}
@@ -13,4 +13,18 @@ public abstract class LocalEvent extends Event {
 		this.node = node;
 		return this;
 	}
+	
+	public int getNode() {
+		return node;
+	}
+	
+	/**
+	 * Whether the event only reads and writes state of its own node (and
+	 * otherwise only immutable or barrier-protected data), and schedules new
+	 * events no earlier than one propagation delay ahead. Isolated events
+	 * may be run in parallel by the ParallelEngine.
+	 **/
+	public boolean isIsolated() {
+		return false;
+	}
 }
@@ -12,7 +12,7 @@ import graph.Channel;
 public abstract class Message extends LocalEvent {
 
 	protected int sender;
-	private static float STANDARD_PROPAGATION_DELAY = 0.01f;
+	public static final float STANDARD_PROPAGATION_DELAY = 0.01f;
 	
 	/** Sends a message by scheduling an arrival **/
 	public void send(int sender, int receiver, Simulation sim) {
@@ -0,0 +1,154 @@
+package core.event;
+
+/**
+ * Pending compact messages (see CompactMessage), stored column-wise in
+ * primitive arrays that are reused as a ring buffer, so sending a message
+ * allocates nothing. All messages have the same propagation delay and are
+ * sent in time order, so appending keeps them sorted by tick (FIFO).
+ * Sequence numbers are taken from the event queue, so messages and events
+ * of the same tick keep the order in which they were created.
+ * @author Josua
+ */
+public class MessageSlab {
+
+	private final EventQueue queue;
+	private long[] ticks, seqs, values;
+	private int[] types, nodes, senders, args;
+	private Object[] contexts;
+	private int first, size, mask;
+
+	/**
+	 * @param queue event queue providing the sequence numbers,
+	 * null for buffers that are not ordered against events
+	 */
+	public MessageSlab(EventQueue queue) {
+		this.queue = queue;
+		allocate(64);
+	}
+
+	/** Appends a message arriving at the given tick, which must not be before the last one **/
+	public void add(long tick, int type, Object context, int sender, int node, int arg, long value) {
+		if (size > 0 && tick < ticks[(first + size - 1) & mask])
+			throw new IllegalStateException("Compact message " + CompactMessage.name(type) + " sent out of order");
+		if (size == types.length)
+			grow();
+		int i = (first + size++) & mask;
+		ticks[i] = tick;
+		seqs[i] = (queue == null) ? 0 : queue.nextSequence();
+		types[i] = type;
+		contexts[i] = context;
+		senders[i] = sender;
+		nodes[i] = node;
+		args[i] = arg;
+		values[i] = value;
+	}
+
+	/** Moves the first message of another slab to the end of this one **/
+	public void transfer(MessageSlab from) {
+		int i = from.first;
+		add(from.ticks[i], from.types[i], from.contexts[i], from.senders[i],
+			from.nodes[i], from.args[i], from.values[i]);
+		from.poll();
+	}
+
+	/** Removes the first message **/
+	public void poll() {
+		contexts[first] = null;
+		first = (first + 1) & mask;
+		size--;
+	}
+
+	/** Delivers the i-th message to the handler of its type **/
+	public void deliver(int i) {
+		int j = (first + i) & mask;
+		CompactMessage.dispatch(types[j], contexts[j], nodes[j], senders[j], args[j], values[j]);
+	}
+
+	/** Whether the first message is due before an event (or there is no event) **/
+	public boolean isBefore(Event event) {
+		if (size == 0) return false;
+		if (event == null) return true;
+		long tick = ticks[first];
+		return tick < event.tick || (tick == event.tick && seqs[first] < event.seq);
+	}
+
+	public void clear() {
+		while (size > 0)
+			poll();
+		first = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	// FIELDS OF THE I-TH MESSAGE
+
+	public long tick(int i) {
+		return ticks[(first + i) & mask];
+	}
+
+	public int type(int i) {
+		return types[(first + i) & mask];
+	}
+
+	public Object context(int i) {
+		return contexts[(first + i) & mask];
+	}
+
+	public int node(int i) {
+		return nodes[(first + i) & mask];
+	}
+
+	public int sender(int i) {
+		return senders[(first + i) & mask];
+	}
+
+	public int arg(int i) {
+		return args[(first + i) & mask];
+	}
+
+	public long value(int i) {
+		return values[(first + i) & mask];
+	}
+
+
+	// INTERNAL
+
+	private void allocate(int capacity) {
+		ticks = new long[capacity];
+		seqs = new long[capacity];
+		values = new long[capacity];
+		types = new int[capacity];
+		nodes = new int[capacity];
+		senders = new int[capacity];
+		args = new int[capacity];
+		contexts = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	/** Doubles the capacity, unwrapping the ring **/
+	private void grow() {
+		long[] t = ticks, s = seqs, v = values;
+		int[] ty = types, n = nodes, se = senders, a = args;
+		Object[] c = contexts;
+		int oldFirst = first, oldMask = mask;
+		allocate(2 * types.length);
+		for (int k = 0; k < size; k++) {
+			int i = (oldFirst + k) & oldMask;
+			ticks[k] = t[i];
+			seqs[k] = s[i];
+			values[k] = v[i];
+			types[k] = ty[i];
+			nodes[k] = n[i];
+			senders[k] = se[i];
+			args[k] = a[i];
+			contexts[k] = c[i];
+		}
+		first = 0;
+	}
+}
@@ -4,45 +4,48 @@ import java.util.Set;
 
 import core.Simulation;
 
-public class PMessage extends LocalEvent {
+/**
+ * Sends a payload to neighbors as compact messages (see CompactMessage),
+ * one PMessage is shared by all messages of a send, flood or forward.
+ */
+public class PMessage {
+
+	/** Payload message (compact, arg = hops) **/
+	public static final int TYPE = CompactMessage.register("PMessage", PMessage::receive);
 
-	protected int sender;
 	protected Payload payload;
-	protected int hops;
-	private static float STANDARD_PROPAGATION_DELAY = 0.01f;
+	protected Simulation sim;
 	
-	private PMessage(int sender, int receiver, Payload payload, int hops) {	
-		this.sender = sender;
-		this.node = receiver;
+	private PMessage(Payload payload, Simulation sim) {	
 		this.payload = payload;
-		this.hops = hops;
+		this.sim = sim;
 	}
 	
 	/** Send payload immediately to one neighbor **/
 	public static void send(Payload payload, int sender, int receiver, Simulation sim) {
-		new PMessage(sender, receiver, payload, 0).after(STANDARD_PROPAGATION_DELAY, sim);
+		sim.sendMessage(TYPE, new PMessage(payload, sim), sender, receiver, 0, 0);
 	}
 	
 	/** Flood payload immediately to all neighbors **/
 	public static void flood(Payload payload, int sender, Set<Integer> blacklist, Simulation sim) {
+		PMessage message = new PMessage(payload, sim);
 		for (int neighbor : sim.graph().node(sender).neighbors()) {
 			if (blacklist == null || !blacklist.contains(neighbor))
-				new PMessage(sender, neighbor, payload, 0).after(STANDARD_PROPAGATION_DELAY, sim);
+				sim.sendMessage(TYPE, message, sender, neighbor, 0, 0);
 		}
 	}
 	
-	/** Forward payload immediately to all but original sender **/
-	public void forward() {
-		for (int neighbor : sim.graph().node(sender).neighbors()) {
+	/** Forward payload received at a node immediately to all but the original sender **/
+	public static void forward(Payload payload, int node, int sender, int hops, Simulation sim) {
+		PMessage message = new PMessage(payload, sim);
+		for (int neighbor : sim.graph().node(node).neighbors()) {
 			if (neighbor != sender)
-				new PMessage(node, neighbor, payload, hops + 1).after(STANDARD_PROPAGATION_DELAY, sim);
+				sim.sendMessage(TYPE, message, node, neighbor, hops + 1, 0);
 		}
 	}
 
-	@Override
-	public void run() {
-		payload.handle(node, sender, sim);
-		completed();
+	private void receive(int node, int sender, int hops, long value) {
+		payload.handle(node, sender, hops, sim);
 	}
 	
-}
\ No newline at end of file
+}
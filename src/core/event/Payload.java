@@ -6,4 +6,9 @@ public abstract class Payload {
 
 	public abstract void handle(int node, int sender, Simulation sim);
 	
+	/** Handles the payload after the given number of forwards (see PMessage.forward) **/
+	public void handle(int node, int sender, int hops, Simulation sim) {
+		handle(node, sender, sim);
+	}
+	
 }
@@ -11,7 +11,7 @@ public abstract class RepeatedLocalEvent extends LocalEvent {
 	
 	@Override
 	public void prepareAndRun() {
-		after(interval, sim);
+		afterTimer(interval, sim);
 		run();
 	}
 	
@@ -0,0 +1,171 @@
+package core.event;
+
+/**
+ * Hierarchical timing wheel (Varghese and Lauck, 1987) for periodic and
+ * coarse-grained timers, e.g. per-node protocol timers. Level 0 has 64
+ * slots of 2^10 ticks (about 1 ms), every further level 64 slots each
+ * spanning a whole revolution of the level below. A timer sits on the
+ * lowest level whose revolution contains both the timer and the wheel's
+ * current position, and moves down (cascades) when the position enters
+ * its slot, so timers on lower levels always expire first. Level 0 slots
+ * are sorted by tick and insertion order, so timers keep their exact
+ * ticks (including per-node jitter) and fire in a deterministic order.
+ * The simulation checks the next expiry alongside the head of the main
+ * queue, so timers never enter it (see Simulation.addTimer).
+ * @author Josua
+ */
+public class TimerWheel {
+
+	private static final int RESOLUTION = 10, BITS = 6, LEVELS = 6;
+	private static final int SLOTS = 1 << BITS, OVERFLOW = LEVELS * SLOTS;
+
+	// slot lists (linked via Event.prev/next), the last one for timers beyond the top level
+	private final Event[] heads = new Event[OVERFLOW + 1], tails = new Event[OVERFLOW + 1];
+	// non-empty slots per level
+	private final long[] occupied = new long[LEVELS];
+	/** position of the wheel, no timer expires before it **/
+	private long cursor;
+	private long sequence;
+	private int size;
+
+	public int size() {
+		return size;
+	}
+
+	/** Adds a timer, due at its tick (which must not be before the last polled one) **/
+	public void add(Event event) {
+		if (event.tick < cursor)
+			throw new IllegalArgumentException("Timer " + event.getName() + " is in the past");
+		event.seq = sequence++;
+		event.timer = true;
+		link(event);
+		size++;
+	}
+
+	/** Removes a pending timer, returns false if the event is not on the wheel **/
+	public boolean remove(Event event) {
+		if (!event.timer) return false;
+		unlink(event, index(event.tick));
+		event.timer = false;
+		size--;
+		return true;
+	}
+
+	/** Tick of the next timer, -1 if there is none **/
+	public long nextTick() {
+		if (size == 0) return -1;
+		for (int level = 0; level < LEVELS; level++) {
+			// timers of a level are in the current or later slots of its revolution
+			int current = slot(cursor, level);
+			long slots = occupied[level] & (-1L << current);
+			if (slots == 0) continue;
+			Event head = heads[level * SLOTS + Long.numberOfTrailingZeros(slots)];
+			return (level == 0) ? head.tick : earliest(head).tick;
+		}
+		return earliest(heads[OVERFLOW]).tick;
+	}
+
+	/** Removes and returns the next timer due at or before the given tick, or null **/
+	public Event poll(long tick) {
+		long next = nextTick();
+		if (next < 0 || next > tick) return null;
+		advance(next);
+		int i = slot(next, 0);
+		Event event = heads[i];
+		unlink(event, i);
+		event.timer = false;
+		size--;
+		return event;
+	}
+
+
+	// INTERNAL
+
+	/** Moves the wheel to a tick (no timer is earlier), cascading the slots it enters **/
+	private void advance(long tick) {
+		long previous = cursor;
+		cursor = tick;
+		if (heads[OVERFLOW] != null && (previous >>> shift(LEVELS)) != (tick >>> shift(LEVELS)))
+			cascade(OVERFLOW);
+		for (int level = LEVELS - 1; level > 0; level--)
+			cascade(level * SLOTS + slot(tick, level));
+	}
+
+	private void cascade(int i) {
+		Event event = heads[i];
+		if (event == null) return;
+		heads[i] = tails[i] = null;
+		if (i < OVERFLOW)
+			occupied[i / SLOTS] &= ~(1L << (i % SLOTS));
+		while (event != null) {
+			Event next = event.next;
+			event.prev = event.next = null;
+			link(event);
+			event = next;
+		}
+	}
+
+	/** Slot list index of a tick at the current position **/
+	private int index(long tick) {
+		for (int level = 0; level < LEVELS; level++)
+			if ((tick >>> shift(level + 1)) == (cursor >>> shift(level + 1)))
+				return level * SLOTS + slot(tick, level);
+		return OVERFLOW;
+	}
+
+	private static int shift(int level) {
+		return RESOLUTION + BITS * level;
+	}
+
+	private static int slot(long tick, int level) {
+		return (int) ((tick >>> shift(level)) & (SLOTS - 1));
+	}
+
+	private static Event earliest(Event head) {
+		Event min = head;
+		for (Event e = head.next; e != null; e = e.next)
+			if (e.compareTo(min) < 0)
+				min = e;
+		return min;
+	}
+
+	/** Appends to the slot list, sorted on level 0 **/
+	private void link(Event event) {
+		int i = index(event.tick);
+		Event prev = tails[i];
+		if (i < SLOTS)
+			while (prev != null && prev.compareTo(event) > 0)
+				prev = prev.prev;
+		event.prev = prev;
+		if (prev == null) {
+			event.next = heads[i];
+			heads[i] = event;
+		} else {
+			event.next = prev.next;
+			prev.next = event;
+		}
+		if (event.next == null) {
+			tails[i] = event;
+		} else {
+			event.next.prev = event;
+		}
+		if (i < OVERFLOW)
+			occupied[i / SLOTS] |= 1L << (i % SLOTS);
+	}
+
+	private void unlink(Event event, int i) {
+		if (event.prev == null) {
+			heads[i] = event.next;
+		} else {
+			event.prev.next = event.next;
+		}
+		if (event.next == null) {
+			tails[i] = event.prev;
+		} else {
+			event.next.prev = event.prev;
+		}
+		event.prev = event.next = null;
+		if (heads[i] == null && i < OVERFLOW)
+			occupied[i / SLOTS] &= ~(1L << (i % SLOTS));
+	}
+}
@@ -2,38 +2,41 @@ package graph;
 
 /**
  * A bidirectional edge in the graph. Stores a capacity in either direction.
+ * The channel state lives in a row of a ChannelStore; a Channel object is a
+ * lightweight view of that row. Snapshots (see clone()) hold their state
+ * themselves.
  */
 public class Channel implements Cloneable {
-	private static final int HTLC_MIN = 0, HTLC_MAX = Integer.MAX_VALUE;
+	private ChannelStore store;
+	private int slot;
 	private int id, node1, node2;
-	private int capacity1, capacity2;
-	private int minHTLC1, minHTLC2, maxHTLC1, maxHTLC2;
-	private int timelockDelta1, timelockDelta2;
-	private int feeBase1, feeBase2; // MSAT
-	private int feeRate1, feeRate2; // MMSAT
-	private boolean disabled1, disabled2;
 	private float timestamp;
 	
+	/** Creates a channel with its own single-row store **/
 	public Channel(int id, int node1, int node2, int capacity1, int capacity2) {
+		this(new ChannelStore(1), id, node1, node2, capacity1, capacity2);
+	}
+	
+	public Channel(int id, int node1, int node2) {
+		this(id, node1, node2, 0, 0);
+	}
+	
+	/** Creates a channel as a new row of the given store **/
+	Channel(ChannelStore store, int id, int node1, int node2, int capacity1, int capacity2) {
+		this.store = store;
+		this.slot = store.add(capacity1, capacity2);
 		this.id = id;
 		this.node1 = node1;
 		this.node2 = node2;
-		this.capacity1 = capacity1;
-		this.capacity2 = capacity2;
-		this.minHTLC1 = HTLC_MIN;
-		this.minHTLC2 = HTLC_MIN;
-		this.maxHTLC1 = HTLC_MAX;
-		this.maxHTLC2 = HTLC_MAX;
-		this.timelockDelta1 = 1;
-		this.timelockDelta2 = 1;
-		this.feeBase1 = this.feeBase2 = 1000;
-		this.feeRate1 = this.feeRate2 = 2;
-		this.disabled1 = false;
-		this.disabled2 = false;
 	}
 	
-	public Channel(int id, int node1, int node2) {
-		this(id, node1, node2, 0, 0);
+	/** Creates a channel without a store row (for snapshots) **/
+	Channel(int id, int node1, int node2, float timestamp) {
+		this.slot = -1;
+		this.id = id;
+		this.node1 = node1;
+		this.node2 = node2;
+		this.timestamp = timestamp;
 	}
 	
 	
@@ -44,7 +47,7 @@ public class Channel implements Cloneable {
 	}
 	
 	public int getCapacity() {
-		return capacity1 + capacity2;
+		return capacity(0) + capacity(1);
 	}
 	
 	public int getMinTimelockDelta() {
@@ -64,50 +67,44 @@ public class Channel implements Cloneable {
 	}
 	
 	public int getCapacity1() {
-		return capacity1;
+		return capacity(0);
 	}
 	
 	public int getCapacity2() {
-		return capacity2;
+		return capacity(1);
 	}
 	
 	public int getCapacity(int node) {
-		return ((node == node1) ? capacity1 : capacity2);
+		return capacity(side(node));
 	}
 	
 	public double getDisbalance() {
-		return 2 * Math.abs(0.5 - capacity1 / (double) getCapacity());
+		return 2 * Math.abs(0.5 - getCapacity1() / (double) getCapacity());
 	}
 
 	public void setCapacities(int capacity1, int capacity2) {
-		this.capacity1 = capacity1;
-		this.capacity2 = capacity2;
+		writeCapacities(capacity1, capacity2);
 	}
 	
 	public boolean setFees(int base1, int base2, int rate1, int rate2) {
-		boolean changed = feeBase1 != base1 || feeBase1 != base1 || feeRate1 != rate1 || feeRate2 != rate2;
-		this.feeBase1 = base1;
-		this.feeBase2 = base2;
-		this.feeRate1 = rate1;
-		this.feeRate2 = rate2;
+		boolean changed = feeBase(0) != base1 || feeBase(1) != base2
+			|| feeRate(0) != rate1 || feeRate(1) != rate2;
+		writeFees(base1, base2, rate1, rate2);
 		return changed;
 	}
 	
 	public void setTimelockDeltas(int delta1, int delta2) {
-		this.timelockDelta1 = delta1;
-		this.timelockDelta2 = delta2;
+		writeTimelockDeltas(delta1, delta2);
 	}
 	
 	public void setHTLCAmountLimits(int min1, int min2, int max1, int max2) {
-		this.minHTLC1 = min1;
-		this.maxHTLC1 = max1 > 0 ? max1 : Integer.MAX_VALUE;
-		this.minHTLC2 = min2;
-		this.maxHTLC2 = max2 > 0 ? max2 : Integer.MAX_VALUE;
+		writeHTLCLimits(min1, min2,
+			max1 > 0 ? max1 : Integer.MAX_VALUE,
+			max2 > 0 ? max2 : Integer.MAX_VALUE);
 	}
 	
 	public void setDisabled(boolean dir12, boolean dir21) {
-		this.disabled1 = dir12;
-		this.disabled2 = dir21;
+		writeDisabled(dir12, dir21);
 	}
 	
 	/**
@@ -123,15 +120,39 @@ public class Channel implements Cloneable {
 
 	/** Calculates the fee required to transfer a payment **/
 	public int getFee(int sender, int amount) {
-		int feeBase = (sender == node1) ? feeBase1 : feeBase2;
-		double feeRate = (sender == node1) ? feeRate1 : feeRate2;
+		int side = side(sender);
+		int feeBase = feeBase(side);
+		double feeRate = feeRate(side);
 		return (int) Math.ceil(0.001 * feeBase + (amount * feeRate * 0.001));
 	}
 	
+	/** Snapshot of this channel, a value not backed by a store **/
 	@Override
 	public Channel clone() {
-        try {
-			return (Channel) super.clone();
+		return new ChannelSnapshot(this);
+	}
+	
+	/**
+	 * View of this channel over another store that holds its row at the same
+	 * slot, e.g. a ChannelStore.copy() of this channel's store. Snapshots
+	 * (see clone()) have no row, they append their state to the store.
+	 */
+	public Channel withStore(ChannelStore store) {
+		return moveTo(store, slot);
+	}
+
+	/** Moves this channel's state into a new row of another store **/
+	void relocate(ChannelStore store) {
+		this.slot = store.add(this.store, slot);
+		this.store = store;
+	}
+	
+	private Channel moveTo(ChannelStore store, int slot) {
+		try {
+			Channel ch = (Channel) super.clone();
+			ch.store = store;
+			ch.slot = slot;
+			return ch;
 		} catch (CloneNotSupportedException e) {
 			e.printStackTrace();
 			return null;
@@ -144,21 +165,17 @@ public class Channel implements Cloneable {
 
 	/** Add/subtract from a channel side **/
 	public void modify(int node, int amount) {
-		if (node == node1) {
-			capacity1 += amount;
-		} else {
-			capacity2 += amount;
-		}
+		addCapacity(side(node), amount);
 	}
 
 	/** Returns the min transfer amount that this channel accepts **/
 	public int getHTLCMinimum(int sender) {
-		return (sender == node1) ? minHTLC2 : minHTLC1;
+		return minHTLC(1 - side(sender));
 	}
 	
 	/** Returns the max transfer amount that this channel accept **/
-	private int getHTLCMaximum(int sender) {
-		return (sender == node1) ? maxHTLC2 : maxHTLC1;
+	public int getHTLCMaximum(int sender) {
+		return maxHTLC(1 - side(sender));
 	}
 
 	public void setNode1(int id) {
@@ -177,13 +194,17 @@ public class Channel implements Cloneable {
 		this.timestamp = time;
 		return this;
 	}
+	
+	public float getTimestamp() {
+		return timestamp;
+	}
 
 	/**
 	 * Returns the base fee of this channel
 	 * @return msat
 	 */
 	public int getBaseFee(int sender) {
-		return (sender == node1) ? feeBase1 : feeBase2;
+		return feeBase(side(sender));
 	}
 	
 	/**
@@ -191,7 +212,67 @@ public class Channel implements Cloneable {
 	 * @return milli msat
 	 */
 	public int getFeeRate(int sender) {
-		return (sender == node1) ? feeRate1 : feeRate2;
+		return feeRate(side(sender));
+	}
+
+	/** Store row side of a node (0 = node 1, 1 = node 2) **/
+	private int side(int node) {
+		return (node == node1) ? 0 : 1;
+	}
+
+
+	// ROW ACCESS (overridden by snapshots, which hold their row themselves)
+
+	int capacity(int side) {
+		return store.capacity(slot, side);
+	}
+
+	int minHTLC(int side) {
+		return store.minHTLC(slot, side);
+	}
+
+	int maxHTLC(int side) {
+		return store.maxHTLC(slot, side);
+	}
+
+	int timelockDelta(int side) {
+		return store.timelockDelta(slot, side);
+	}
+
+	int feeBase(int side) {
+		return store.feeBase(slot, side);
+	}
+
+	int feeRate(int side) {
+		return store.feeRate(slot, side);
+	}
+
+	boolean disabled(int side) {
+		return store.disabled(slot, side);
+	}
+
+	void writeCapacities(int capacity1, int capacity2) {
+		store.setCapacities(slot, capacity1, capacity2);
+	}
+
+	void addCapacity(int side, int amount) {
+		store.addCapacity(slot, side, amount);
+	}
+
+	void writeHTLCLimits(int min1, int min2, int max1, int max2) {
+		store.setHTLCLimits(slot, min1, min2, max1, max2);
+	}
+
+	void writeTimelockDeltas(int delta1, int delta2) {
+		store.setTimelockDeltas(slot, delta1, delta2);
+	}
+
+	void writeFees(int base1, int base2, int rate1, int rate2) {
+		store.setFees(slot, base1, base2, rate1, rate2);
+	}
+
+	void writeDisabled(boolean dir12, boolean dir21) {
+		store.setDisabled(slot, dir12, dir21);
 	}
 
 	/*
@@ -0,0 +1,125 @@
+package graph;
+
+/**
+ * Snapshot of a channel (see Channel.clone()), which holds the state of
+ * both directions in plain fields instead of a ChannelStore row. Routing
+ * algorithms take one per received channel update, so a snapshot is a
+ * single small object.
+ * @author Josua
+ */
+final class ChannelSnapshot extends Channel {
+
+	private int capacity1, capacity2;
+	private int minHTLC1, minHTLC2, maxHTLC1, maxHTLC2;
+	private int timelockDelta1, timelockDelta2;
+	private int feeBase1, feeBase2; // MSAT
+	private int feeRate1, feeRate2; // MMSAT
+	private boolean disabled1, disabled2;
+
+	ChannelSnapshot(Channel ch) {
+		super(ch.getID(), ch.getNode1(), ch.getNode2(), ch.getTimestamp());
+		capacity1 = ch.capacity(0);
+		capacity2 = ch.capacity(1);
+		minHTLC1 = ch.minHTLC(0);
+		minHTLC2 = ch.minHTLC(1);
+		maxHTLC1 = ch.maxHTLC(0);
+		maxHTLC2 = ch.maxHTLC(1);
+		timelockDelta1 = ch.timelockDelta(0);
+		timelockDelta2 = ch.timelockDelta(1);
+		feeBase1 = ch.feeBase(0);
+		feeBase2 = ch.feeBase(1);
+		feeRate1 = ch.feeRate(0);
+		feeRate2 = ch.feeRate(1);
+		disabled1 = ch.disabled(0);
+		disabled2 = ch.disabled(1);
+	}
+
+	/** Appends the state of this snapshot as a new row of the store **/
+	@Override
+	public Channel withStore(ChannelStore store) {
+		Channel ch = new Channel(store, getID(), getNode1(), getNode2(), capacity1, capacity2);
+		ch.writeHTLCLimits(minHTLC1, minHTLC2, maxHTLC1, maxHTLC2);
+		ch.writeTimelockDeltas(timelockDelta1, timelockDelta2);
+		ch.writeFees(feeBase1, feeBase2, feeRate1, feeRate2);
+		ch.writeDisabled(disabled1, disabled2);
+		return ch.setTimestamp(getTimestamp());
+	}
+
+
+	// ROW ACCESS
+
+	@Override
+	int capacity(int side) {
+		return (side == 0) ? capacity1 : capacity2;
+	}
+
+	@Override
+	int minHTLC(int side) {
+		return (side == 0) ? minHTLC1 : minHTLC2;
+	}
+
+	@Override
+	int maxHTLC(int side) {
+		return (side == 0) ? maxHTLC1 : maxHTLC2;
+	}
+
+	@Override
+	int timelockDelta(int side) {
+		return (side == 0) ? timelockDelta1 : timelockDelta2;
+	}
+
+	@Override
+	int feeBase(int side) {
+		return (side == 0) ? feeBase1 : feeBase2;
+	}
+
+	@Override
+	int feeRate(int side) {
+		return (side == 0) ? feeRate1 : feeRate2;
+	}
+
+	@Override
+	boolean disabled(int side) {
+		return (side == 0) ? disabled1 : disabled2;
+	}
+
+	@Override
+	void writeCapacities(int capacity1, int capacity2) {
+		this.capacity1 = capacity1;
+		this.capacity2 = capacity2;
+	}
+
+	@Override
+	void addCapacity(int side, int amount) {
+		if (side == 0) capacity1 += amount;
+		else capacity2 += amount;
+	}
+
+	@Override
+	void writeHTLCLimits(int min1, int min2, int max1, int max2) {
+		minHTLC1 = min1;
+		minHTLC2 = min2;
+		maxHTLC1 = max1;
+		maxHTLC2 = max2;
+	}
+
+	@Override
+	void writeTimelockDeltas(int delta1, int delta2) {
+		timelockDelta1 = delta1;
+		timelockDelta2 = delta2;
+	}
+
+	@Override
+	void writeFees(int base1, int base2, int rate1, int rate2) {
+		feeBase1 = base1;
+		feeBase2 = base2;
+		feeRate1 = rate1;
+		feeRate2 = rate2;
+	}
+
+	@Override
+	void writeDisabled(boolean dir12, boolean dir21) {
+		disabled1 = dir12;
+		disabled2 = dir21;
+	}
+}
@@ -0,0 +1,178 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays storage for channel states.
+ * Each row (slot) holds both directions of a channel; direction 0 belongs
+ * to node 1, direction 1 to node 2, and is stored at index 2 * slot + side.
+ * The rows of a graph's store are indexed by channel ID.
+ * @author Josua
+ */
+public final class ChannelStore {
+
+	private static final int HTLC_MIN = 0, HTLC_MAX = Integer.MAX_VALUE;
+
+	private int size;
+	private int[] capacity, minHTLC, maxHTLC, timelockDelta;
+	private int[] feeBase; // MSAT
+	private int[] feeRate; // MMSAT
+	private boolean[] disabled;
+
+	/** Creates an empty store **/
+	public ChannelStore() {
+		this(16);
+	}
+
+	/** Creates an empty store with room for a number of channels **/
+	public ChannelStore(int initialCapacity) {
+		allocate(Math.max(initialCapacity, 1));
+	}
+
+	/** Appends a row with default limits, fees and timelocks **/
+	public int add(int capacity1, int capacity2) {
+		int slot = nextSlot(), i = 2 * slot;
+		capacity[i] = capacity1;
+		capacity[i + 1] = capacity2;
+		minHTLC[i] = minHTLC[i + 1] = HTLC_MIN;
+		maxHTLC[i] = maxHTLC[i + 1] = HTLC_MAX;
+		timelockDelta[i] = timelockDelta[i + 1] = 1;
+		feeBase[i] = feeBase[i + 1] = 1000;
+		feeRate[i] = feeRate[i + 1] = 2;
+		disabled[i] = disabled[i + 1] = false;
+		return slot;
+	}
+
+	/** Appends a copy of a row of another (or this) store **/
+	public int add(ChannelStore src, int srcSlot) {
+		int slot = nextSlot();
+		for (int side = 0; side < 2; side++) {
+			int i = 2 * slot + side, j = 2 * srcSlot + side;
+			capacity[i] = src.capacity[j];
+			minHTLC[i] = src.minHTLC[j];
+			maxHTLC[i] = src.maxHTLC[j];
+			timelockDelta[i] = src.timelockDelta[j];
+			feeBase[i] = src.feeBase[j];
+			feeRate[i] = src.feeRate[j];
+			disabled[i] = src.disabled[j];
+		}
+		return slot;
+	}
+
+	/** Copies all rows into a new store with the same slots **/
+	public ChannelStore copy() {
+		ChannelStore s = new ChannelStore(size);
+		s.size = size;
+		System.arraycopy(capacity, 0, s.capacity, 0, 2 * size);
+		System.arraycopy(minHTLC, 0, s.minHTLC, 0, 2 * size);
+		System.arraycopy(maxHTLC, 0, s.maxHTLC, 0, 2 * size);
+		System.arraycopy(timelockDelta, 0, s.timelockDelta, 0, 2 * size);
+		System.arraycopy(feeBase, 0, s.feeBase, 0, 2 * size);
+		System.arraycopy(feeRate, 0, s.feeRate, 0, 2 * size);
+		System.arraycopy(disabled, 0, s.disabled, 0, 2 * size);
+		return s;
+	}
+
+	/** Reduces memory overhead of the store **/
+	public void trimToSize() {
+		if (2 * size < capacity.length)
+			resize(Math.max(size, 1));
+	}
+
+	public int size() {
+		return size;
+	}
+
+
+	// ROW ACCESS (side 0 = node 1, side 1 = node 2)
+
+	public int capacity(int slot, int side) {
+		return capacity[2 * slot + side];
+	}
+
+	public int minHTLC(int slot, int side) {
+		return minHTLC[2 * slot + side];
+	}
+
+	public int maxHTLC(int slot, int side) {
+		return maxHTLC[2 * slot + side];
+	}
+
+	public int timelockDelta(int slot, int side) {
+		return timelockDelta[2 * slot + side];
+	}
+
+	public int feeBase(int slot, int side) {
+		return feeBase[2 * slot + side];
+	}
+
+	public int feeRate(int slot, int side) {
+		return feeRate[2 * slot + side];
+	}
+
+	public boolean disabled(int slot, int side) {
+		return disabled[2 * slot + side];
+	}
+
+	public void setCapacities(int slot, int capacity1, int capacity2) {
+		capacity[2 * slot] = capacity1;
+		capacity[2 * slot + 1] = capacity2;
+	}
+
+	public void addCapacity(int slot, int side, int amount) {
+		capacity[2 * slot + side] += amount;
+	}
+
+	public void setHTLCLimits(int slot, int min1, int min2, int max1, int max2) {
+		minHTLC[2 * slot] = min1;
+		minHTLC[2 * slot + 1] = min2;
+		maxHTLC[2 * slot] = max1;
+		maxHTLC[2 * slot + 1] = max2;
+	}
+
+	public void setTimelockDeltas(int slot, int delta1, int delta2) {
+		timelockDelta[2 * slot] = delta1;
+		timelockDelta[2 * slot + 1] = delta2;
+	}
+
+	public void setFees(int slot, int base1, int base2, int rate1, int rate2) {
+		feeBase[2 * slot] = base1;
+		feeBase[2 * slot + 1] = base2;
+		feeRate[2 * slot] = rate1;
+		feeRate[2 * slot + 1] = rate2;
+	}
+
+	public void setDisabled(int slot, boolean dir12, boolean dir21) {
+		disabled[2 * slot] = dir12;
+		disabled[2 * slot + 1] = dir21;
+	}
+
+
+	// INTERNAL
+
+	private int nextSlot() {
+		if (2 * (size + 1) > capacity.length)
+			resize(Math.max(2 * size, 1));
+		return size++;
+	}
+
+	private void allocate(int rows) {
+		capacity = new int[2 * rows];
+		minHTLC = new int[2 * rows];
+		maxHTLC = new int[2 * rows];
+		timelockDelta = new int[2 * rows];
+		feeBase = new int[2 * rows];
+		feeRate = new int[2 * rows];
+		disabled = new boolean[2 * rows];
+	}
+
+	private void resize(int rows) {
+		capacity = Arrays.copyOf(capacity, 2 * rows);
+		minHTLC = Arrays.copyOf(minHTLC, 2 * rows);
+		maxHTLC = Arrays.copyOf(maxHTLC, 2 * rows);
+		timelockDelta = Arrays.copyOf(timelockDelta, 2 * rows);
+		feeBase = Arrays.copyOf(feeBase, 2 * rows);
+		feeRate = Arrays.copyOf(feeRate, 2 * rows);
+		disabled = Arrays.copyOf(disabled, 2 * rows);
+	}
+}
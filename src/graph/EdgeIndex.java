@@ -0,0 +1,102 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash index from an unordered node pair to a channel ID.
+ * Uses linear probing on primitive arrays; for parallel channels only
+ * the first one added is indexed, just like Node.getChannelTo().
+ * @author Josua
+ */
+final class EdgeIndex {
+
+	private static final long EMPTY = -1;
+
+	private long[] keys;
+	private int[] values;
+	private int size, mask;
+
+	EdgeIndex(int expected) {
+		int capacity = 16;
+		while (capacity < 2 * expected)
+			capacity <<= 1;
+		allocate(capacity);
+	}
+
+	/** Returns the channel ID between two nodes, or -1 **/
+	int get(int node1, int node2) {
+		long key = key(node1, node2);
+		for (int i = slot(key); ; i = (i + 1) & mask) {
+			if (keys[i] == key) return values[i];
+			if (keys[i] == EMPTY) return -1;
+		}
+	}
+
+	/** Indexes a channel, unless the nodes are already connected **/
+	void add(int node1, int node2, int channel) {
+		if (2 * (size + 1) > keys.length)
+			rehash(2 * keys.length);
+		long key = key(node1, node2);
+		int i = slot(key);
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) return;
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = channel;
+		size++;
+	}
+
+	/** Removes the entry of a node pair (backward shift deletion) **/
+	void remove(int node1, int node2) {
+		long key = key(node1, node2);
+		int i = slot(key);
+		while (keys[i] != key) {
+			if (keys[i] == EMPTY) return;
+			i = (i + 1) & mask;
+		}
+		for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+			int home = slot(keys[j]);
+			// move entry j into the gap at i, if i lies on j's probe path
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = EMPTY;
+		size--;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] == EMPTY) continue;
+			int j = slot(oldKeys[i]);
+			while (keys[j] != EMPTY)
+				j = (j + 1) & mask;
+			keys[j] = oldKeys[i];
+			values[j] = oldValues[i];
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private static long key(int node1, int node2) {
+		return (node1 < node2)
+			? ((long) node1 << 32) | (node2 & 0xFFFFFFFFL)
+			: ((long) node2 << 32) | (node1 & 0xFFFFFFFFL);
+	}
+}
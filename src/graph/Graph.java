@@ -14,25 +14,32 @@ public class Graph {
 
 	protected ArrayList<Node> nodesArr;
 	protected ArrayList<Channel> channelsArr;
+	protected ChannelStore channelStore;
 	//	private LinkedList<IntConsumer> nodeListeners;
 	//	private LinkedList<IntConsumer> channelListeners;
 	private LinkedList<Consumer<Channel>> channelUpdateListeners;
+	private EdgeIndex edges;
+	private Topology topology;
 	
 	
 	/** Creates an empty graph. **/
 	public Graph() {
 		nodesArr = new ArrayList<Node>();
 		channelsArr = new ArrayList<Channel>();
+		channelStore = new ChannelStore();
+		edges = new EdgeIndex(16);
 		channelUpdateListeners = new LinkedList<Consumer<Channel>>();
 		//		nodeListeners = new LinkedList<IntConsumer>();
 		//		channelListeners = new LinkedList<IntConsumer>();
 		
 	}
 	
-	/** Reduces memory overhead of the graph. **/
+	/** Reduces memory overhead of the graph, and builds the topology snapshot. **/
 	public void optimize() {
 		nodesArr.trimToSize();
 		channelsArr.trimToSize();
+		channelStore.trimToSize();
+		topology = new Topology(nodesArr, edges);
 	}
 
 	
@@ -60,14 +67,28 @@ public class Graph {
 		return channelsArr.get(id);
 	}
 	
+	/** Returns the channel between two nodes, or null (hash lookup) **/
 	public Channel channel(int node1, int node2) {
-		return node(node1).getChannelTo(node2);
+		int id = edges.get(node1, node2);
+		return (id < 0) ? null : channelsArr.get(id);
 	}
 	
 	public ArrayList<Channel> channels() {
 		return channelsArr;
 	}
 	
+	/** Channel states, one row per channel ID **/
+	public ChannelStore channelStore() {
+		return channelStore;
+	}
+	
+	/** CSR adjacency snapshot, rebuilt after topology changes **/
+	public Topology topology() {
+		if (topology == null)
+			topology = new Topology(nodesArr, edges);
+		return topology;
+	}
+	
 	
 	// GRAPH CREATION / MODIFICATION
 	
@@ -88,6 +109,7 @@ public class Graph {
 	public Node newNode(int role) {
 		Node node = new Node(nodesArr.size(), role);
 		nodesArr.add(node);
+		topology = null;
 		return node;
 	}
 	
@@ -98,13 +120,27 @@ public class Graph {
 	
 	/** Creates and links a channel between two nodes, also adding a capacity. **/
 	public Channel newChannel(int node1, int node2, int capacity1, int capacity2) {
-		Channel c = new Channel(channelsArr.size(), node1, node2, capacity1, capacity2);
+		Channel c = new Channel(channelStore, channelsArr.size(), node1, node2, capacity1, capacity2);
 		channelsArr.add(c);
 		nodesArr.get(node1).addChannel(c);
 		nodesArr.get(node2).addChannel(c);
+		edges.add(node1, node2, c.getID());
+		topology = null;
 		return c;
 	}
 	
+	/** Moves one end of a channel to another node; the other end becomes node 1. **/
+	public void rewireChannel(Channel ch, int oldNode, int newNode) {
+		int node = ch.getOtherNode(oldNode);
+		edges.remove(node, oldNode);
+		node(oldNode).removeChannel(ch);
+		ch.setNode1(node);
+		ch.setNode2(newNode);
+		node(newNode).addChannel(ch);
+		edges.add(node, newNode, ch.getID());
+		topology = null;
+	}
+	
 	public void removeNodes(Collection<Node> nodes) {
 		removeChannels(nodes.stream()
 			.flatMap(n -> n.channels().stream())
@@ -112,6 +148,8 @@ public class Graph {
 		nodesArr.removeAll(nodes);	
 		for (int i = 0; i < size(); i++)
 			node(i).setID(i);
+		reindex();
+		topology = null;
 	}
 	
 	public void removeChannels(Collection<Channel> channels) {
@@ -120,9 +158,23 @@ public class Graph {
 			node(ch.getNode2()).removeChannel(ch);
 		});
 		channelsArr.removeAll(channels);
+		// compact the store, so that rows stay indexed by channel ID
+		ChannelStore store = new ChannelStore(channelsArr.size());
 		for (int id = 0; id < channelsArr.size(); id++) {
 			channel(id).setID(id);
+			channel(id).relocate(store);
 		}
+		channelStore = store;
+		reindex();
+		topology = null;
+	}
+	
+	/** Rebuilds the channel lookup index after IDs changed **/
+	private void reindex() {
+		edges = new EdgeIndex(channelsArr.size());
+		for (Node node : nodesArr)
+			for (Channel ch : node.channels())
+				edges.add(ch.getNode1(), ch.getNode2(), ch.getID());
 	}
 	
 	// GRAPH OBSERVATION
@@ -0,0 +1,85 @@
+package graph;
+
+import java.util.List;
+
+/**
+ * Immutable compressed sparse row (CSR) snapshot of the graph adjacency.
+ * The adjacency entries of node n are the indices begin(n) to end(n) - 1,
+ * in the same order as Node.channels().
+ * @author Josua
+ */
+public final class Topology {
+
+	private final int[] offsets, neighbor, channel, indexed;
+	private final boolean[] isNode1;
+
+	Topology(List<Node> nodes, EdgeIndex edges) {
+		int size = nodes.size(), entries = 0;
+		offsets = new int[size + 1];
+		for (int n = 0; n < size; n++) {
+			offsets[n] = entries;
+			entries += nodes.get(n).getDegree();
+		}
+		offsets[size] = entries;
+		neighbor = new int[entries];
+		channel = new int[entries];
+		isNode1 = new boolean[entries];
+		indexed = new int[entries];
+		// entry of the indexed channel to each neighbor of the current node
+		int[] entry = new int[size];
+		for (int n = 0; n < size; n++) {
+			int i = offsets[n];
+			for (Channel ch : nodes.get(n).channels()) {
+				neighbor[i] = ch.getOtherNode(n);
+				channel[i] = ch.getID();
+				isNode1[i] = (ch.getNode1() == n);
+				if (edges.get(n, neighbor[i]) == channel[i])
+					entry[neighbor[i]] = i;
+				i++;
+			}
+			for (i = offsets[n]; i < offsets[n + 1]; i++)
+				indexed[i] = entry[neighbor[i]];
+		}
+	}
+
+	/** First adjacency index of a node **/
+	public int begin(int node) {
+		return offsets[node];
+	}
+
+	/** Adjacency index after the last one of a node **/
+	public int end(int node) {
+		return offsets[node + 1];
+	}
+
+	public int degree(int node) {
+		return offsets[node + 1] - offsets[node];
+	}
+
+	/** Node at the other end of an adjacency entry **/
+	public int neighbor(int index) {
+		return neighbor[index];
+	}
+
+	/** Channel ID of an adjacency entry **/
+	public int channel(int index) {
+		return channel[index];
+	}
+
+	/** Whether the node owning an adjacency entry is node 1 of its channel **/
+	public boolean isNode1(int index) {
+		return isNode1[index];
+	}
+
+	/**
+	 * Entry of the channel to the same neighbor which Graph.channel(node1, node2)
+	 * returns; only differs from the index for parallel channels
+	 **/
+	public int indexed(int index) {
+		return indexed[index];
+	}
+
+	public int size() {
+		return offsets.length - 1;
+	}
+}
@@ -6,7 +6,7 @@ import graph.Graph;
  * Creates a Barabási–Albert graph, which is scale-free and has
  * a better than random clustering coefficient.
  * see https://en.wikipedia.org/wiki/Barab%C3%A1si%E2%80%93Albert_model
- * Complexity: O(V * newEdgesPerNode)
+ * Complexity: O(V * newEdgesPerNode * log V)
  */
 public class BarabasiAlbert extends GraphGenerator {
 
@@ -37,23 +37,22 @@ public class BarabasiAlbert extends GraphGenerator {
 		Graph g = gen.generate();
 		
 		
+		// sample attachment targets proportionally to their degree
+		WeightedSampler degrees = new WeightedSampler(size);
+		for (int j = 0; j < initialNetworkSize; j++)
+			degrees.set(j, g.node(j).getDegree());
+		
 		// add rest of nodes
 		for (int i = initialNetworkSize; i < this.size; i++) {		
 			g.newNode();
 			
 			// add 'newEdgesPerNode' channels
-			float totalDegrees = g.channels().size() * 2;
 			for (int n = 0; n < newEdgesPerNode; n++) {
-				float rand = random.getFloat();
-				float degrees = 0;
-				for (int j = 0; j < i; j++) {
-					degrees += g.node(j).getDegree();
-					if (rand * totalDegrees <= degrees) {
-						g.newChannel(i, j);
-						break;
-					}
-				}
+				int j = degrees.sample(random.getFloat());
+				g.newChannel(i, j);
+				degrees.set(j, g.node(j).getDegree());
 			}
+			degrees.set(i, g.node(i).getDegree());
 		}
 		
 		return g;
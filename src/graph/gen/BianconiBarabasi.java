@@ -1,5 +1,8 @@
 package graph.gen;
 
+import java.util.LinkedList;
+import java.util.List;
+
 import graph.Graph;
 
 /**
@@ -45,6 +48,10 @@ public class BianconiBarabasi extends GraphGenerator {
 			}
 		}
 		
+		WeightedSampler weights = new WeightedSampler(size);
+		for (int j = 0; j < initialNetworkSize; j++)
+			weights.set(j, weight(g, fitness, j));
+		
 		// add rest of nodes	
 		for (int i = initialNetworkSize; i < this.size; i++) {
 			g.newNode();
@@ -68,17 +75,28 @@ public class BianconiBarabasi extends GraphGenerator {
 //			}
 //			accFitness += fitness[i];
 			
+			// each j < i links with probability p_j = c * w_j; instead of a trial
+			// per node, draw the link count ~ Poisson(c * sum(w_j)) and sample
+			// that many distinct nodes proportionally to w_j
 			double tmp_sum_nk = 0;
 			while (g.node(i).getDegree() == 0) { // prevent unconnected nodes
-				for (int j = 0; j < i; j++) {
-					if (random.getFloat() <= 0.5 * averageDegree * fitness[j] * adjustedDegree(g, j) / sum_nk) {
-						double oldDegree = adjustedDegree(g, i);
-						g.newChannel(i, j);	
-						tmp_sum_nk += (adjustedDegree(g, i) - oldDegree) * fitness[j];
-					}
+				double c = 0.5 * averageDegree / sum_nk;
+				int links = randomPoisson(c * weights.total());
+				List<Integer> linked = new LinkedList<>();
+				for (int n = 0; n < links; n++) {
+					int j = weights.sample(random.getDouble());
+					if (weights.get(j) <= 0) break; // all nodes linked
+					double oldDegree = adjustedDegree(g, i);
+					g.newChannel(i, j);	
+					tmp_sum_nk += (adjustedDegree(g, i) - oldDegree) * fitness[j];
+					weights.set(j, 0); // without replacement
+					linked.add(j);
 				}
+				for (int j : linked)
+					weights.set(j, weight(g, fitness, j));
 			}
 			sum_nk += tmp_sum_nk + adjustedDegree(g, i) * fitness[i];
+			weights.set(i, weight(g, fitness, i));
 		}
 		
 		return g;
@@ -89,6 +107,24 @@ public class BianconiBarabasi extends GraphGenerator {
 		return Math.exp(-random.getDouble() * fitnessDistribution);
 	}
 	
+	/** Attachment weight (nodes with negative adjusted degree never attract links) **/
+	private double weight(Graph g, double[] fitness, int id) {
+		return Math.max(0, fitness[id] * adjustedDegree(g, id));
+	}
+	
+	/** Poisson distributed random number (Knuth, in steps to avoid underflow) **/
+	private int randomPoisson(double mean) {
+		int k = 0;
+		for (; mean > 0; mean -= 500) {
+			double limit = Math.exp(-Math.min(mean, 500)), p = random.getDouble();
+			while (p > limit) {
+				p *= random.getDouble();
+				k++;
+			}
+		}
+		return k;
+	}
+	
 	private double adjustedDegree(Graph g, int id) {
 		return (g.node(id).getDegree() - 1) *  + 1;
 	}
@@ -41,10 +41,12 @@ public class KlemmEguiluz extends GraphGenerator {
 		for (int i = 0; i < size; i++)
 			fitness[i] = randomFitness();
 	
+		// preferential attachment weights of all nodes
+		WeightedSampler weights = new WeightedSampler(size);
+		for (int k = 0; k < g.size(); k++)
+			weights.set(k, weight(g, k));
 		List<Integer> active = g.nodes().stream()
 			.map(n -> n.getID()).collect(Collectors.toList());
-		double totalWeight = g.nodes().stream()
-			.mapToDouble(nd -> weight(g, nd.getID())).sum();
 		// add rest of nodes	
 		for (int i = connections; i < this.size; i++) {
 			g.newNode();
@@ -56,19 +58,16 @@ public class KlemmEguiluz extends GraphGenerator {
 			for (int node : active) {
 				// choose active or preferential random node
 				if (random.getDouble() < mu)
-					node = choosePreferentialRandom(g, null, totalWeight);
+					node = weights.sample(random.getDouble());
 				// add link
-				totalWeight -= weight(g, node);
 				g.newChannel(i, node);
-				totalWeight += weight(g, node);	
+				weights.set(node, weight(g, node));
 			}
-			totalWeight += weight(g, i);
+			weights.set(i, weight(g, i));
 			// activate
 			active.add(i);
 			// deactivate preferential random active node
-			double totalActiveWeight = active.stream().mapToDouble(k->weight(g,k)).sum();
-			int rem = choosePreferentialRandom(g,
-					active, totalActiveWeight);
+			int rem = choosePreferentialRandom(g, active);
 			active.remove(new Integer(rem));
 		}
 		
@@ -86,22 +85,16 @@ public class KlemmEguiluz extends GraphGenerator {
 			: ((g.node(id).getDegree() - 1) * degreeFactor + 1) * fitness[id];
 	}
 	
-	private int choosePreferentialRandom(Graph g,
-			List<Integer> inputs, double totalWeight) {
+	private int choosePreferentialRandom(Graph g, List<Integer> inputs) {
+		double totalWeight = 0;
+		for (int i : inputs)
+			totalWeight += weight(g, i);
 		double rand = random.getDouble(),
 			   sum = 0;
-		if (inputs != null) {
-			for (int i : inputs) {
-				sum += weight(g, i);
-				if (rand * totalWeight <= sum)
-					return i;
-			}
-		} else {
-			for (int i = 0; i < g.size(); i++) {
-				sum += weight(g, i);
-				if (rand * totalWeight <= sum)
-					return i;
-			}
+		for (int i : inputs) {
+			sum += weight(g, i);
+			if (rand * totalWeight <= sum)
+				return i;
 		}
 		return -1;
 	}
@@ -34,15 +34,11 @@ public class WattsStrogatz extends GraphGenerator {
 				if (random.getDouble() <= beta) {
 					int oldNode = (i + j) % size;
 					Channel ch = g.channel(i, oldNode);
-					g.node(oldNode).removeChannel(ch);
-					ch.setNode1(i);
-					ch.setNode2(-1);
 					int dest = -1;
 					do {
 						dest = random.getInt(size);
-					} while (g.channel(i, dest) != null);
-					g.node(dest).addChannel(ch);
-					ch.setNode2(dest);
+					} while (dest != oldNode && g.channel(i, dest) != null);
+					g.rewireChannel(ch, oldNode, dest);
 				}
 		return g;
 	}
@@ -0,0 +1,72 @@
+package graph.gen;
+
+/**
+ * Dynamic weighted random selection over indices 0..size-1, based on a
+ * Fenwick tree: weight updates and samples take O(log n).
+ * Used by the preferential attachment generators.
+ * @author Josua
+ */
+public class WeightedSampler {
+
+	private final double[] tree, weights;
+	private final int highestStep;
+
+	/** Creates a sampler where all indices have weight 0 **/
+	public WeightedSampler(int size) {
+		tree = new double[size + 1];
+		weights = new double[size];
+		int step = 1;
+		while (2 * step <= size)
+			step *= 2;
+		highestStep = step;
+	}
+
+	public int size() {
+		return weights.length;
+	}
+
+	public double get(int index) {
+		return weights[index];
+	}
+
+	/** Sets the weight of an index (must not be negative) **/
+	public void set(int index, double weight) {
+		double delta = weight - weights[index];
+		weights[index] = weight;
+		for (int i = index + 1; i < tree.length; i += i & -i)
+			tree[i] += delta;
+	}
+
+	/** Sum of all weights **/
+	public double total() {
+		return prefixSum(weights.length);
+	}
+
+	/** Sum of the weights of indices below the given one **/
+	public double prefixSum(int index) {
+		double sum = 0;
+		for (int i = index; i > 0; i -= i & -i)
+			sum += tree[i];
+		return sum;
+	}
+
+	/**
+	 * Returns the first index whose cumulative weight reaches rand * total(),
+	 * so that each index is chosen proportionally to its weight.
+	 * @param rand uniform random number in [0, 1)
+	 */
+	public int sample(double rand) {
+		double remaining = rand * total();
+		int pos = 0;
+		for (int step = highestStep; step > 0; step /= 2) {
+			if (pos + step < tree.length && tree[pos + step] < remaining) {
+				pos += step;
+				remaining -= tree[pos];
+			}
+		}
+		// rounding errors may end the search past the last positive weight
+		while (pos > 0 && (pos >= weights.length || weights[pos] <= 0))
+			pos--;
+		return pos;
+	}
+}
@@ -5,6 +5,8 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import core.Component;
 import utility.global.Config;
@@ -21,7 +23,8 @@ public abstract class Metric extends Component {
 	protected String name;
 	protected boolean storeToFile;
 	
-	private static boolean statisticsInitiated = false;
+	/** statistics files already written to by this process **/
+	private static Set<String> statisticsInitiated = ConcurrentHashMap.newKeySet();
     private BufferedWriter writer;	
     protected static final String NEW_LINE = System.getProperty("line.separator");
 	
@@ -68,6 +71,17 @@ public abstract class Metric extends Component {
 		}
 	}
 	
+	/** Writes buffered lines to the metrics file, e.g. to inspect a running simulation **/
+	public void flush() {
+		if (storeToFile && writer != null) {
+			try {
+				writer.flush();
+	        } catch (IOException e) {
+	            e.printStackTrace();
+	        }
+		}
+	}
+	
 	/** Use beforeSimulation() to calulate static metrics or attach listeners/events for dynamic metrics **/
 	protected void beforeSimulation() {};
 	
@@ -111,8 +125,8 @@ public abstract class Metric extends Component {
 	/** Writes a line to the "_STATS.txt" file **/
 	protected void stat(String name, String... value) {
 		try {
-		    FileWriter fw = new FileWriter(Config.get("OUTPUT_DIR") + "/_STATS.txt", statisticsInitiated);
-		    statisticsInitiated = true;
+			String path = Config.get("OUTPUT_DIR") + "/_STATS.txt";
+		    FileWriter fw = new FileWriter(path, !statisticsInitiated.add(path));
 		    fw.write(name + ": " + String.join(", ", value) + NEW_LINE);
 		    fw.close();
 		} catch (IOException e) {
@@ -23,7 +23,7 @@ public abstract class SamplingMetric extends Metric {
 	@Override
 	public void prepare() {
 		super.prepare();
-		new Sampling().after(interval, sim);
+		new Sampling().afterTimer(interval, sim);
 	}
 	
 	/**
@@ -37,7 +37,7 @@ public abstract class SamplingMetric extends Metric {
 		@Override
 		public void run() {
 			sample(time);
-			new Sampling().after(interval, sim);
+			new Sampling().afterTimer(interval, sim);
 		}
 	}
 	
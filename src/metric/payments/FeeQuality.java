@@ -3,12 +3,12 @@ package metric.payments;
 import metric.SamplingMetric;
 import payment.Payment;
 import routing.algorithm.OptimalRouting;
-import routing.algorithm.RoutingAlgorithm;
 
 /** Compares fees to optimal (atomic) route fees **/
 public class FeeQuality extends SamplingMetric {
 	
-	private RoutingAlgorithm optimalRouting;
+	private static final int LANDMARKS = 8;
+	private OptimalRouting optimalRouting;
 	private long totalPayments, payments;
 	private double totalQuality, quality;
 	
@@ -17,7 +17,7 @@ public class FeeQuality extends SamplingMetric {
 		labels("Time (s)", "Average Fee Quality (%)");
 		
 		totalQuality = quality = totalPayments = payments = 0;
-		optimalRouting = new OptimalRouting();
+		optimalRouting = new OptimalRouting(LANDMARKS);
 		optimalRouting.initComponent(sim, random.getLong());
 		optimalRouting.prepare();
 		
@@ -25,7 +25,7 @@ public class FeeQuality extends SamplingMetric {
 			if (p.hasSucceeded())  {
 				payments++;
 				Payment p2 = new Payment(p.getSource(), p.getTarget(), p.getAmount());
-				p2.setDryRun(() -> quality += percentage(p2.getFee(), p.getFee()));
+				p2.setDryRun(sim, () -> quality += percentage(p2.getFee(), p.getFee()));
 				optimalRouting.findPaths(p2);
 			}
 		});
@@ -45,6 +45,8 @@ public class FeeQuality extends SamplingMetric {
 		stat("Fee Quality (%)", (totalPayments > 0)
 				?  String.valueOf(totalQuality / (float) totalPayments)
 				: "No payments were routed");
+		stat("Optimal Route Settled Nodes", optimalRouting.getAverageSettledNodes());
+		stat("Optimal Route Query Time (us)", optimalRouting.getAverageQueryTime());
 	}
 	
 }
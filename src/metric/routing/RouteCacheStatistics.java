@@ -0,0 +1,47 @@
+package metric.routing;
+
+import metric.SamplingMetric;
+import routing.algorithm.CachedRouting;
+
+/**
+ * Records the hit rate and invalidations of the route cache.
+ * Only works with CachedRouting.
+ **/
+public class RouteCacheStatistics extends SamplingMetric {
+
+	private CachedRouting cache;
+	private long hits, misses, invalidations;
+
+	@Override
+	public void beforeSimulation() {
+		labels("Time (s)", "Cache Hit Rate (%)", "Cache Invalidations", "Cache Entries");
+		if (sim.routing() instanceof CachedRouting)
+			cache = (CachedRouting) sim.routing();
+		hits = misses = invalidations = 0;
+	}
+
+	@Override
+	protected void sample(float time) {
+		if (cache == null) return;
+		long newHits = cache.getHits() - hits, newMisses = cache.getMisses() - misses;
+		write(time, new Object[] { percentage(newHits, newHits + newMisses),
+			cache.getInvalidations() - invalidations, cache.getSize() });
+		hits = cache.getHits();
+		misses = cache.getMisses();
+		invalidations = cache.getInvalidations();
+	}
+
+	@Override
+	protected void afterSimulation() {
+		if (cache == null) {
+			stat("Route Cache", "Routing is not cached");
+			return;
+		}
+		stat("Route Cache Hits", String.valueOf(cache.getHits()));
+		stat("Route Cache Misses", String.valueOf(cache.getMisses()));
+		stat("Route Cache Invalidations", String.valueOf(cache.getInvalidations()));
+		stat("Route Cache Evictions", String.valueOf(cache.getEvictions()));
+		stat("Route Cache Hit Rate (%)", percentage(cache.getHits(), cache.getHits() + cache.getMisses()));
+	}
+
+}
@@ -1,9 +1,11 @@
 package metric.routing;
 
 import metric.SamplingMetric;
+import routing.algorithm.CachedRouting;
 import routing.algorithm.FlareRouting;
 import routing.algorithm.LandmarkCentricRouting;
 import routing.algorithm.LandmarkUniverseRouting;
+import routing.algorithm.RoutingAlgorithm;
 import routing.algorithm.SourceGraphRouting;
 import routing.util.SpanningForestGenerator;
 import routing.util.SpanningTreeGenerator;
@@ -19,22 +21,22 @@ public class RoutingManagementTraffic extends SamplingMetric {
 	public void beforeSimulation() {
 		labels("Time (s)", "Channel Update Rate");
 		updates = 0;
-		if (sim.routing() instanceof SourceGraphRouting) {
+		RoutingAlgorithm routing = sim.routing();
+		if (routing instanceof CachedRouting)
+			routing = ((CachedRouting) routing).getRouting();
+		if (routing instanceof SourceGraphRouting) {
 			sim.beforeEvent(SourceGraphRouting.ChannelUpdate.class, e -> updates++);
 		}
-		if (sim.routing() instanceof FlareRouting) {		
-			sim.beforeEvent(FlareRouting.NeighborReset.class, e -> updates++);
-			sim.beforeEvent(FlareRouting.BeaconRequest.class, e -> updates++);
-			sim.beforeEvent(FlareRouting.BeaconAck.class, e -> updates++);
-			sim.beforeEvent(FlareRouting.Subscribe.class, e -> updates++);
-			sim.beforeEvent(FlareRouting.Unsubscribe.class, e -> updates++);
-			sim.beforeEvent(FlareRouting.DynamicInfo.class, e -> updates++);
+		if (routing instanceof FlareRouting) {
+			sim.beforeEvent(FlareRouting.ManagementMessage.class, e -> updates++);
 		}
-		if (sim.routing() instanceof LandmarkCentricRouting) {
-			sim.beforeEvent(SpanningTreeGenerator.TreeUpdate.class, e -> updates++);
+		if (routing instanceof LandmarkCentricRouting) {
+			sim.beforeMessage(SpanningTreeGenerator.TREE_UPDATE, (c, node, sender, arg, value) -> updates++);
+			sim.beforeEvent(SpanningTreeGenerator.TreeComplete.class, e -> updates += e.getMessages());
 		}
-		if (sim.routing() instanceof LandmarkUniverseRouting) {
-			sim.beforeEvent(SpanningForestGenerator.TreeUpdate.class, e -> updates++);
+		if (routing instanceof LandmarkUniverseRouting) {
+			sim.beforeMessage(SpanningForestGenerator.TREE_UPDATE, (c, node, sender, arg, value) -> updates++);
+			sim.beforeEvent(SpanningForestGenerator.TreeComplete.class, e -> updates += e.getMessages());
 		}
 	}
 
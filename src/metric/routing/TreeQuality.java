@@ -7,8 +7,10 @@ import java.util.stream.Stream;
 import graph.Node;
 import metric.SamplingMetric;
 import payment.Route;
+import routing.algorithm.CachedRouting;
 import routing.algorithm.LandmarkCentricRouting;
 import routing.algorithm.LandmarkUniverseRouting;
+import routing.algorithm.RoutingAlgorithm;
 import routing.util.SpanningForest;
 import utility.lib.Lists;
 
@@ -25,13 +27,16 @@ public class TreeQuality extends SamplingMetric {
 	@Override 
 	protected void beforeSimulation() {
 		lms = null;
-		if (sim.routing() instanceof LandmarkCentricRouting) {
-			lms = ((LandmarkCentricRouting) sim.routing()).getLandmarks();
+		RoutingAlgorithm routing = sim.routing();
+		if (routing instanceof CachedRouting)
+			routing = ((CachedRouting) routing).getRouting();
+		if (routing instanceof LandmarkCentricRouting) {
+			lms = ((LandmarkCentricRouting) routing).getLandmarks();
 			labels("Time (s)", Lists.strArray(IntStream.range(0, lms.length)
 				.mapToObj(i -> "LM" + (i+1) + " Quality")));
 		}
-		if (sim.routing() instanceof LandmarkUniverseRouting) {
-			unis = ((LandmarkUniverseRouting) sim.routing()).getUniverses();
+		if (routing instanceof LandmarkUniverseRouting) {
+			unis = ((LandmarkUniverseRouting) routing).getUniverses();
 			labels("Time (s)", Lists.strArray(IntStream.range(0, unis.length)
 					.mapToObj(i -> "U" + (i+1) + " Quality")));
 		}
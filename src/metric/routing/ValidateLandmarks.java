@@ -30,10 +30,8 @@ public class ValidateLandmarks extends StatisticMetric {
 		Arrays.stream(lms).forEach(lm -> {
 			Set<Integer> roots = new HashSet<>();
 			graph().nodes().forEach(n -> {
-				int[] path1 = lm.toRoot.getPathFrom(n.getID(), true);
-				int[] path2 = lm.fromRoot.getPathTo(n.getID(), true);
-				roots.add(path1[path1.length - 1]);
-				roots.add(path2[0]);
+				roots.add(lm.toRoot.getRoot(n.getID()));
+				roots.add(lm.fromRoot.getRoot(n.getID()));
 			});
 			if (roots.size() > 1) {
 				System.out.println("Landmark invalid: roots=" + roots);
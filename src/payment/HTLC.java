@@ -25,6 +25,7 @@ public class HTLC extends Message {
 	private int index;
 	private boolean completed;
 	private Channel channel;
+	private Event timeout;
 	
 	public HTLC(Route route) {
 		this(route, 1, null);
@@ -94,12 +95,13 @@ public class HTLC extends Message {
 		channel = sim.graph().channel(sender, receiver);
 		channel.modify(sender, -route.getAmount(index));
 		//sim.graph().channelUpdated(channel); // TODO should we update due to blockage?
-		Event.make(() -> completeHTLC(false)).after(route.getTimelock(index - 1) + 1, sim);
+		timeout = Event.make(() -> completeHTLC(false)).after(route.getTimelock(index - 1) + 1, sim);
 	}
 	
 	/** Completes an HTLC with either success or failure **/
 	private void completeHTLC(boolean success) {
 		if (completed) return;
+		timeout.cancel();
 		channel.modify(success ? node : sender, route.getAmount(index));
 		if (success)
 			sim.graph().channelUpdated(channel);
@@ -14,6 +14,7 @@ public class NewHTLC {
 	private State state;
 	private enum State {INITIAL, COMMITTED, FULFILLED, FAILED};
 	private NewHTLC previous;
+	private Event timeout;
 	
 	public NewHTLC(Simulation sim, Route route, int index, NewHTLC previous) {
 		this.sim = sim;
@@ -44,7 +45,7 @@ public class NewHTLC {
 	/** Enacts this HTLC **/
 	public void commit() {
 		//channel.addHTLC(this, route.getNode(idx));
-		Event.make(() -> fail()).after(route.getTimelock(idx) + 1, sim);
+		timeout = Event.make(() -> fail()).after(route.getTimelock(idx) + 1, sim);
 		this.state = State.COMMITTED;
 	}
 	
@@ -77,6 +78,7 @@ public class NewHTLC {
 		@Override
 		public void run() {
 			if (state != State.COMMITTED) return;
+			timeout.cancel();
 			//channel.completeHTLC(true);
 			state = State.FULFILLED;
 			if (previous == null) {
@@ -91,6 +93,7 @@ public class NewHTLC {
 		@Override
 		public void run() {
 			if (state != State.COMMITTED) return;
+			timeout.cancel();
 			//channel.completeHTLC(false);
 			state = State.FULFILLED;
 			if (previous == null) {
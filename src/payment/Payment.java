@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import core.Simulation;
 import core.event.Event;
 
 public class Payment extends Event {
@@ -18,7 +19,6 @@ public class Payment extends Event {
 	
 	// only for debug reasons
 	private int id;
-	private static int globalID = 0;
 	private boolean dryRun;
 	
 	public enum Result {
@@ -47,7 +47,7 @@ public class Payment extends Event {
 	/** Step 1 of payment process **/
 	@Override
 	public void run() {
-		this.id = globalID++;
+		this.id = sim.nextPaymentID();
 		sim.routing().findPaths(this);
 	}
 	
@@ -103,7 +103,8 @@ public class Payment extends Event {
 	// INTRUSIVE MODIFICATION
 	
 	/** Replaces the payment execution/completion with a custom runnable **/
-	public void setDryRun(Runnable executor) {
+	public void setDryRun(Simulation sim, Runnable executor) {
+		this.sim = sim;
 		this.dryRun = true;
 		executors.add(executor);
 	}
@@ -32,7 +32,7 @@ public abstract class FeePolicy extends Component {
 				if (updateChannelFee(ch))
 					handlers.forEach(h -> h.accept(ch));
 			});
-			new UpdateFees().after(FEE_UPDATE_INTERVAL, sim);
+			new UpdateFees().afterTimer(FEE_UPDATE_INTERVAL, sim);
 		}
 	}
 
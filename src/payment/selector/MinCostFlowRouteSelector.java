@@ -0,0 +1,292 @@
+package payment.selector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import graph.Channel;
+import graph.Graph;
+import payment.Payment;
+import payment.Route;
+import routing.util.IndexedHeap;
+
+/**
+ * Splits a payment by solving a min-cost flow over the channels offered by
+ * the routing algorithm (RoutingAlgorithm.getFlowChannels). The amount is
+ * divided into units; every channel direction is an arc whose capacity is
+ * its balance (less a fee reserve) in units, and whose costs per unit are
+ * the fee for one unit (linearised fees). The flow is found by successive
+ * shortest paths (Dijkstra with node potentials) within an iteration budget
+ * and decomposed into routes, which respect the HTLC limits of the channels.
+ * If the fees added upstream make the routes exceed a balance together, the
+ * flow is solved once more with a reserve for them.
+ * @author Josua
+ */
+public class MinCostFlowRouteSelector extends RouteSelector {
+
+	private static final long INFINITY = Long.MAX_VALUE / 4;
+
+	private final int units, maxIterations;
+
+	// local flow network (nodes stamped with a local index)
+	private int[] nodeStamp, local;
+	private int stamp, nodeCount;
+	private int[] nodes = new int[16], first = new int[16];
+	// arcs, arc ^ 1 is the residual arc; limit = max units per route
+	private int[] head = new int[64], next = new int[64], capacity = new int[64], limit = new int[64];
+	private long[] cost = new long[64];
+	private int arcCount;
+	private long flowCost; // linearised fees of the last flow, -1 if none
+	// search state
+	private long[] potential = new long[16], distance = new long[16];
+	private int[] prevArc = new int[16], onPath = new int[16];
+	private IndexedHeap heap;
+
+	/** 100 units, at most 32 augmentations **/
+	public MinCostFlowRouteSelector() {
+		this(100, 32);
+	}
+
+	/**
+	 * @param units number of units the amount is split into (granularity)
+	 * @param maxIterations budget of augmenting paths per payment
+	 */
+	public MinCostFlowRouteSelector(int units, int maxIterations) {
+		this.units = units;
+		this.maxIterations = maxIterations;
+	}
+
+	@Override
+	public List<Route> selectRoutes(Payment payment) {
+		int amount = payment.getAmount();
+		if (amount <= 0 || payment.getSource() == payment.getTarget()) return null;
+		int[] channels = sim.routing().getFlowChannels(payment);
+		// first without a reserve for the fees added upstream, then with the fees of that flow
+		List<Route> routes = solve(payment, channels, 0);
+		if (routes == null && flowCost >= 0)
+			routes = solve(payment, channels, (int) Math.min(2 * flowCost, amount * MAX_FEE_PERCENT * 0.01));
+		return routes;
+	}
+
+	/**
+	 * Solves the flow, reserving the given amount on every arc
+	 * @return the routes, null if there is no valid split (flowCost < 0 if there is no flow)
+	 */
+	private List<Route> solve(Payment payment, int[] channels, int reserve) {
+		int amount = payment.getAmount();
+		int total = Math.min(units, amount);
+		int quantum = amount / total;
+		int remainder = amount - total * quantum;
+		flowCost = -1;
+
+		build(channels, quantum, remainder + reserve);
+		if (nodeStamp[payment.getSource()] != stamp || nodeStamp[payment.getTarget()] != stamp) return null;
+		int s = local[payment.getSource()], t = local[payment.getTarget()];
+
+		// successive shortest paths
+		Arrays.fill(potential, 0, nodeCount, 0);
+		int flow = 0;
+		long costs = 0;
+		for (int i = 0; i < maxIterations && flow < total; i++) {
+			if (!search(s, t)) break;
+			int amountUnits = total - flow;
+			for (int v = t; v != s; v = head[prevArc[v] ^ 1])
+				amountUnits = Math.min(amountUnits, capacity[prevArc[v]]);
+			for (int v = t; v != s; v = head[prevArc[v] ^ 1]) {
+				capacity[prevArc[v]] -= amountUnits;
+				capacity[prevArc[v] ^ 1] += amountUnits;
+				costs += amountUnits * cost[prevArc[v]];
+			}
+			flow += amountUnits;
+		}
+		if (flow < total) return null;
+		flowCost = costs;
+
+		// decompose into routes
+		List<Route> routes = new ArrayList<>();
+		int fee = 0;
+		for (int[] part; (part = nextPart(s, t)) != null; ) {
+			int partAmount = part[0] * quantum + (routes.isEmpty() ? remainder : 0);
+			int[] path = Arrays.copyOfRange(part, 1, part.length);
+			if (path.length > MAX_PATH_LENGTH) return null;
+			Route route = new Route(graph(), payment, path, partAmount);
+			if (!route.hasSufficientCapacities()) return null;
+			routes.add(route);
+			fee += route.getFee();
+		}
+		if (!fitCapacities(routes)) return null;
+		return (fee <= amount * MAX_FEE_PERCENT * 0.01) ? routes : null;
+	}
+
+	/** Whether the gross amounts of all routes fit the balance of each channel direction they share **/
+	private boolean fitCapacities(List<Route> routes) {
+		Map<Integer, Long> load = new HashMap<>();
+		for (Route route : routes) {
+			for (int i = 1; i < route.size(); i++) {
+				int sender = route.getNode(i - 1);
+				Channel ch = graph().channel(sender, route.getNode(i));
+				int direction = 2 * ch.getID() + (ch.getNode1() == sender ? 0 : 1);
+				long sum = load.merge(direction, (long) route.getAmount(i - 1), Long::sum);
+				if (sum > ch.getCapacity(sender)) return false;
+			}
+		}
+		return true;
+	}
+
+	/** Builds the flow network, reserving the given amount on every arc **/
+	private void build(int[] channels, int quantum, int reserve) {
+		Graph g = graph();
+		if (nodeStamp == null || nodeStamp.length < g.size()) {
+			nodeStamp = new int[g.size()];
+			local = new int[g.size()];
+			heap = new IndexedHeap(g.size());
+		}
+		if (++stamp == Integer.MAX_VALUE) {
+			Arrays.fill(nodeStamp, 0);
+			stamp = 1;
+		}
+		nodeCount = 0;
+		arcCount = 0;
+		for (int id : channels) {
+			Channel ch = g.channel(id);
+			int n1 = ch.getNode1(), n2 = ch.getNode2();
+			// routes use the indexed channel between two nodes
+			if (g.channel(n1, n2) != ch || ch.getMinTimelockDelta() == 0) continue;
+			addArc(ch, n1, n2, quantum, reserve);
+			addArc(ch, n2, n1, quantum, reserve);
+		}
+	}
+
+	private void addArc(Channel ch, int from, int to, int quantum, int reserve) {
+		if (ch.getHTLCMinimum(from) > quantum) return;
+		int units = (int) Math.max(0, ((long) ch.getCapacity(from) - reserve) / quantum);
+		int perRoute = (int) Math.max(0, ((long) ch.getHTLCMaximum(from) - 1 - reserve) / quantum);
+		if (units == 0 || perRoute == 0) return;
+		int u = localIndex(from), v = localIndex(to);
+		if (arcCount + 2 > head.length) {
+			int size = 2 * head.length;
+			head = Arrays.copyOf(head, size);
+			next = Arrays.copyOf(next, size);
+			capacity = Arrays.copyOf(capacity, size);
+			limit = Arrays.copyOf(limit, size);
+			cost = Arrays.copyOf(cost, size);
+		}
+		long unitCost = ch.getFee(from, quantum);
+		link(u, v, units, perRoute, unitCost);
+		link(v, u, 0, 0, -unitCost);
+	}
+
+	private void link(int from, int to, int cap, int perRoute, long unitCost) {
+		head[arcCount] = to;
+		capacity[arcCount] = cap;
+		limit[arcCount] = perRoute;
+		cost[arcCount] = unitCost;
+		next[arcCount] = first[from];
+		first[from] = arcCount++;
+	}
+
+	private int localIndex(int node) {
+		if (nodeStamp[node] == stamp) return local[node];
+		if (nodeCount == nodes.length) {
+			int size = 2 * nodeCount;
+			nodes = Arrays.copyOf(nodes, size);
+			first = Arrays.copyOf(first, size);
+			potential = new long[size];
+			distance = new long[size];
+			prevArc = new int[size];
+			onPath = new int[size];
+		}
+		nodeStamp[node] = stamp;
+		local[node] = nodeCount;
+		nodes[nodeCount] = node;
+		first[nodeCount] = -1;
+		return nodeCount++;
+	}
+
+	/**
+	 * Dijkstra on the residual network with reduced costs, updates the
+	 * potentials, returns whether the target is reachable
+	 */
+	private boolean search(int s, int t) {
+		Arrays.fill(distance, 0, nodeCount, INFINITY);
+		heap.clear();
+		distance[s] = 0;
+		heap.push(s, 0);
+		while (!heap.isEmpty()) {
+			int u = heap.poll();
+			if (u == t) break;
+			for (int a = first[u]; a >= 0; a = next[a]) {
+				if (capacity[a] == 0) continue;
+				int v = head[a];
+				long d = distance[u] + cost[a] + potential[u] - potential[v];
+				if (d < distance[v]) {
+					distance[v] = d;
+					prevArc[v] = a;
+					heap.push(v, d);
+				}
+			}
+		}
+		if (distance[t] == INFINITY) return false;
+		// nodes not settled before the target keep their reduced costs non-negative with distance[t]
+		for (int v = 0; v < nodeCount; v++)
+			potential[v] += Math.min(distance[v], distance[t]);
+		heap.clear();
+		return true;
+	}
+
+	/**
+	 * Removes the next route from the flow
+	 * @return units followed by the path nodes, null if the flow is empty
+	 */
+	private int[] nextPart(int s, int t) {
+		Arrays.fill(onPath, 0, nodeCount, -1);
+		int[] arcs = new int[8];
+		int length = 0;
+		int u = s;
+		onPath[s] = 0;
+		while (u != t) {
+			int a = first[u];
+			while (a >= 0 && ((a & 1) != 0 || capacity[a ^ 1] == 0))
+				a = next[a];
+			if (a < 0) return null;
+			int v = head[a];
+			if (onPath[v] >= 0) {
+				// drop the flow around a cycle
+				int flow = capacity[a ^ 1];
+				for (int i = onPath[v]; i < length; i++)
+					flow = Math.min(flow, capacity[arcs[i] ^ 1]);
+				capacity[a ^ 1] -= flow;
+				for (int i = onPath[v]; i < length; i++)
+					capacity[arcs[i] ^ 1] -= flow;
+				for (int i = onPath[v]; i < length; i++)
+					onPath[head[arcs[i]]] = -1;
+				length = onPath[v];
+				u = v;
+				continue;
+			}
+			if (length == arcs.length)
+				arcs = Arrays.copyOf(arcs, 2 * length);
+			arcs[length++] = a;
+			onPath[v] = length;
+			u = v;
+		}
+		int flow = Integer.MAX_VALUE;
+		for (int i = 0; i < length; i++)
+			flow = Math.min(flow, Math.min(capacity[arcs[i] ^ 1], limit[arcs[i]]));
+		int[] part = new int[length + 2];
+		part[0] = flow;
+		part[1] = nodes[s];
+		for (int i = 0; i < length; i++) {
+			capacity[arcs[i] ^ 1] -= flow;
+			part[i + 2] = nodes[head[arcs[i]]];
+		}
+		return part;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("MinCostFlowRouteSelector(%d, %d)", units, maxIterations);
+	}
+}
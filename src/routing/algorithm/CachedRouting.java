@@ -0,0 +1,238 @@
+package routing.algorithm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+import core.Simulation;
+import graph.Channel;
+import payment.Payment;
+
+/**
+ * Caching layer around another routing algorithm. The paths of successful
+ * payments are memoised per (source, target, amount bucket) and reused for
+ * later payments, until the fees of a channel on one of the paths change or
+ * its balance no longer allows the largest amount of the bucket, or a
+ * payment using them fails.
+ * Amount buckets grow geometrically with the given factor.
+ * The cache has a bounded size and evicts the least recently used entry.
+ * @author Josua
+ */
+public class CachedRouting extends RoutingAlgorithm {
+
+	private final RoutingAlgorithm routing;
+	private final int maxEntries;
+	private final double bucketFactor;
+
+	private LinkedHashMap<RouteKey, CachedPaths> cache;
+	// channel ID -> cached paths which use the channel
+	private ArrayList<HashSet<CachedPaths>> pathsByChannel;
+	// payments in progress which got cached paths
+	private HashMap<Payment, CachedPaths> served;
+
+	private long hits, misses, invalidations, evictions;
+
+	/** Caches up to maxEntries path sets, amount buckets are powers of 2 **/
+	public CachedRouting(RoutingAlgorithm routing, int maxEntries) {
+		this(routing, maxEntries, 2);
+	}
+
+	public CachedRouting(RoutingAlgorithm routing, int maxEntries, double bucketFactor) {
+		this.routing = routing;
+		this.maxEntries = maxEntries;
+		this.bucketFactor = bucketFactor;
+	}
+
+	@Override
+	public void initComponent(Simulation sim, long seed) {
+		super.initComponent(sim, seed);
+		routing.initComponent(this);
+	}
+
+	@Override
+	public void prepare() {
+		routing.prepare();
+		hits = misses = invalidations = evictions = 0;
+		cache = new LinkedHashMap<>(16, 0.75f, true);
+		served = new HashMap<>();
+		pathsByChannel = new ArrayList<>();
+		for (int i = 0; i < graph().channels().size(); i++)
+			pathsByChannel.add(null);
+
+		graph().onChannelUpdate(ch -> invalidate(ch, false));
+		sim.feePolicy().onFeeUpdate(ch -> invalidate(ch, true));
+		sim.afterEvent(Payment.class, p -> {
+			CachedPaths entry = served.remove(p);
+			if (p.hasSucceeded()) {
+				// hits keep their entry, only paths of the wrapped routing are new
+				if (entry == null && !p.getPaths().isEmpty())
+					store(key(p), p.getPaths());
+			} else if (entry != null && cache.remove(entry.key, entry)) {
+				unindex(entry);
+				invalidations++;
+			}
+		});
+	}
+
+	@Override
+	public void findPaths(Payment p) {
+		CachedPaths entry = cache.get(key(p));
+		if (entry == null) {
+			misses++;
+			routing.findPaths(p);
+			return;
+		}
+		hits++;
+		served.put(p, entry);
+		for (int[] path : entry.paths)
+			p.addPath(path.clone());
+		p.selectRoutes();
+	}
+
+	@Override
+	public int[] getFlowChannels(Payment p) {
+		return routing.getFlowChannels(p);
+	}
+
+	/** Removes the cached paths which use a channel and are affected by its update **/
+	private void invalidate(Channel ch, boolean feesChanged) {
+		HashSet<CachedPaths> entries = pathsByChannel.get(ch.getID());
+		if (entries == null) return;
+		// entries are checked without cache lookups, which would change the LRU order
+		for (CachedPaths entry : new ArrayList<>(entries)) {
+			if (feesChanged || !entry.canPay(ch, maxAmount(entry.key))) {
+				cache.remove(entry.key);
+				unindex(entry);
+				invalidations++;
+			}
+		}
+	}
+
+	private void store(RouteKey key, Iterable<int[]> paths) {
+		CachedPaths entry = new CachedPaths(key, paths);
+		CachedPaths replaced = cache.put(key, entry);
+		if (replaced != null)
+			unindex(replaced);
+		for (int id : entry.channels) {
+			if (pathsByChannel.get(id) == null)
+				pathsByChannel.set(id, new HashSet<>());
+			pathsByChannel.get(id).add(entry);
+		}
+		if (cache.size() > maxEntries) {
+			CachedPaths eldest = cache.values().iterator().next();
+			cache.remove(eldest.key);
+			unindex(eldest);
+			evictions++;
+		}
+	}
+
+	/** Removes a (no longer cached) entry from the channel index **/
+	private void unindex(CachedPaths entry) {
+		for (int id : entry.channels) {
+			HashSet<CachedPaths> entries = pathsByChannel.get(id);
+			entries.remove(entry);
+			if (entries.isEmpty())
+				pathsByChannel.set(id, null);
+		}
+	}
+
+	private RouteKey key(Payment p) {
+		int bucket = (int) Math.floor(Math.log(Math.max(1, p.getAmount())) / Math.log(bucketFactor));
+		return new RouteKey(p.getSource(), p.getTarget(), bucket);
+	}
+
+	/** Largest amount of a key's bucket **/
+	private int maxAmount(RouteKey key) {
+		return (int) Math.min(Math.ceil(Math.pow(bucketFactor, key.bucket + 1)), Integer.MAX_VALUE);
+	}
+
+	public RoutingAlgorithm getRouting() {
+		return routing;
+	}
+
+	public int getSize() {
+		return cache.size();
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	/** Number of entries removed due to channel or fee updates or failed payments **/
+	public long getInvalidations() {
+		return invalidations;
+	}
+
+	/** Number of entries removed due to the size limit **/
+	public long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public long estimateStorage() {
+		long pathStorage = 0;
+		for (CachedPaths entry : cache.values())
+			pathStorage += 3 * 32 + entry.channels.length * 2 * 32;
+		return routing.estimateStorage() + pathStorage;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("CachedRouting(%s, %d)", routing, maxEntries);
+	}
+
+	private static class RouteKey {
+		private final int source, target, bucket;
+
+		RouteKey(int source, int target, int bucket) {
+			this.source = source;
+			this.target = target;
+			this.bucket = bucket;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof RouteKey)) return false;
+			RouteKey k = (RouteKey) o;
+			return source == k.source && target == k.target && bucket == k.bucket;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(source, target, bucket);
+		}
+	}
+
+	private class CachedPaths {
+		private final RouteKey key;
+		private final ArrayList<int[]> paths = new ArrayList<>();
+		private final int[] channels; // IDs of all channels on the paths
+
+		CachedPaths(RouteKey key, Iterable<int[]> found) {
+			this.key = key;
+			HashSet<Integer> ids = new HashSet<>();
+			for (int[] path : found) {
+				paths.add(path.clone());
+				for (int i = 0; i < path.length - 1; i++)
+					ids.add(graph().channel(path[i], path[i + 1]).getID());
+			}
+			channels = ids.stream().mapToInt(id -> id).toArray();
+		}
+
+		/** Whether all hops over a channel can still transfer an amount **/
+		boolean canPay(Channel ch, int amount) {
+			for (int[] path : paths)
+				for (int i = 0; i < path.length - 1; i++)
+					if (graph().channel(path[i], path[i + 1]) == ch
+						&& !ch.canPay(path[i], amount)) return false;
+			return true;
+		}
+	}
+
+}
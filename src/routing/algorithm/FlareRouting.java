@@ -1,13 +1,9 @@
 package routing.algorithm;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -17,7 +13,9 @@ import core.event.Message;
 import graph.Channel;
 import graph.Node;
 import payment.Payment;
-import utility.Pair;
+import routing.util.SubgraphSearch;
+import utility.lib.IntHashMap;
+import utility.lib.IntHashSet;
 import utility.lib.Lists;
 
 public class FlareRouting extends RoutingAlgorithm {
@@ -38,8 +36,7 @@ public class FlareRouting extends RoutingAlgorithm {
 	private static final int BEACON_REACTIVATE_COUNT = 5;
 	
 	// temporary fields for routing
-	private boolean[] visited;
-	private int[] hops, prev;
+	private SubgraphSearch search; // on known channels
 	private int beaconResponses;
 	
 	public FlareRouting() {
@@ -50,9 +47,7 @@ public class FlareRouting extends RoutingAlgorithm {
 		flareNodes = Lists.initArray(graph().size(), id -> new FlareNode(id));
 		addresses = new int[graph().size()];
 		Arrays.setAll(addresses, i -> random.get().nextInt());
-		visited = new boolean[graph().size()];
-		hops = new int[graph().size()];
-		prev = new int[graph().size()];
+		search = new SubgraphSearch(graph());
 		graph().onChannelUpdate(ch -> digestChannelUpdate(ch));
 		graph().channels().forEach(ch -> digestChannelUpdate(ch));	
 		new TickBeacons().now(sim);
@@ -64,24 +59,34 @@ public class FlareRouting extends RoutingAlgorithm {
 	public void findPaths(Payment p) {
 		FlareNode source = flareNodes.get(p.getSource()),
 				  target = flareNodes.get(p.getTarget());
-		Set<Integer> channels = new HashSet<>(source.channelStates.keySet());
-		channels.addAll(target.channelStates.keySet());
-		List<Integer> path = source.getPathTo(p.getTarget(), channels);
+		// search directly on the channels both nodes know
+		search.clear();
+		source.addChannelsTo(search);
+		target.addChannelsTo(search);
+		int[] path = search.findPath(p.getSource(), p.getTarget());
 		if (path != null)
-			p.addPath(Lists.array(path));
-		Set<Beacon> beacons = new HashSet<Beacon>();
-		beacons.addAll(source.beacons);
+			p.addPath(path);
+		List<Beacon> beacons = new ArrayList<>(source.beacons);
 		beacons.addAll(target.beacons);
 		beaconResponses = 0;
-		if (beacons.isEmpty())
+		if (beacons.isEmpty()) {
 			p.selectRoutes();
+			return;
+		}
+		// beacon responses add to the known channels
+		BitSet beaconChannels = new BitSet(graph().channels().size());
 		for (Beacon beacon : beacons) {
 			new ChannelStatesRequest(chs -> {
 				for (Channel ch : chs)
-					channels.add(ch.getID());
-				List<Integer> path2 = source.getPathTo(p.getTarget(), channels);
+					beaconChannels.set(ch.getID());
+				search.clear();
+				source.addChannelsTo(search);
+				target.addChannelsTo(search);
+				for (int ch = beaconChannels.nextSetBit(0); ch >= 0; ch = beaconChannels.nextSetBit(ch + 1))
+					search.add(ch);
+				int[] path2 = search.findPath(p.getSource(), p.getTarget());
 				if (path2 != null)
-					p.addPath(Lists.array(path2));
+					p.addPath(path2);
 				if (++beaconResponses == beacons.size())
 					p.selectRoutes();
 			}).send(source.id, beacon.id, sim);
@@ -112,22 +117,22 @@ public class FlareRouting extends RoutingAlgorithm {
 	public class FlareNode {
 		int id; // Node ID
 		String address; // random binary
-		Set<Integer> nodes; // all the nodes we know through channel updates
-		HashMap<Integer, Channel> channelStates; // all the channels we know
-		Set<Beacon> beacons;
+		IntHashSet nodes; // all the nodes we know through channel updates
+		IntHashMap<Channel> channelStates; // all the channels we know (shared snapshots)
+		List<Beacon> beacons;
 		List<Integer> subscribers, subscribed;
 		List<ChannelStateUpdate> channelUpdates; // channels + TTL, to be propagated
 		List<Object> routingUpdates; // ??
 
 		public FlareNode(int id) {
 			this.id = id;
-			nodes = new HashSet<>();
-			channelStates = new HashMap<>();
-			beacons = new HashSet<>();
-			subscribers = new LinkedList<>();
-			subscribed = new LinkedList<>();
-			channelUpdates = new LinkedList<>();
-			routingUpdates = new LinkedList<>();
+			nodes = new IntHashSet();
+			channelStates = new IntHashMap<>();
+			beacons = new ArrayList<>(MAX_BEACONS);
+			subscribers = new ArrayList<>(0);
+			subscribed = new ArrayList<>(0);
+			channelUpdates = new ArrayList<>();
+			routingUpdates = new ArrayList<>(0);
 		}
 		
 		public void addUpdate(ChannelStateUpdate update) {
@@ -147,6 +152,18 @@ public class FlareRouting extends RoutingAlgorithm {
 			return false;
 		}
 		
+		/** Marks the IDs of all known channels **/
+		public void addChannelsTo(BitSet channels) {
+			for (Channel ch : channelStates)
+				channels.set(ch.getID());
+		}
+		
+		/** Adds all known channels to a search **/
+		public void addChannelsTo(SubgraphSearch search) {
+			for (Channel ch : channelStates)
+				search.add(ch);
+		}
+		
 		public List<Integer> neighbors() {
 			return graph().node(id).neighborsList();
 		}
@@ -154,56 +171,18 @@ public class FlareRouting extends RoutingAlgorithm {
 		/** Finds a path and converts it into a list of channels **/
 		public List<Channel> getChannelsTo(int node) {		
 			if (node < 0) return null;
-			List<Integer> path = getPathTo(node, channelStates.keySet());
-			return IntStream.range(0, path.size() - 1)
+			int[] path = getPathTo(node);
+			return IntStream.range(0, path.length - 1)
 				.mapToObj(i -> channelStates.get(graph()
-					.channel(path.get(i), path.get(i+1)).getID()))
+					.channel(path[i], path[i+1]).getID()))
 				.collect(Collectors.toList());
 		}
 
 		/** Finds a path to the target using only the local graph view **/
-		public List<Integer> getPathTo(int target) {
-			return getPathTo(target, channelStates.keySet());
-		}
-		
-		/**
-		 * Detects routes on the real graph, but restricts search
-		 * to channels in the given channel set.
-		 */
-		public List<Integer> getPathTo(int target, Set<Integer> localChannels) {
-			PriorityQueue<Integer> heap = new PriorityQueue<>(
-					(e1, e2) -> (int) (hops[e1] - hops[e2]));
-			Arrays.fill(visited, false);
-			Arrays.fill(hops, Integer.MAX_VALUE);
-			hops[target] = 0;
-			prev[target] = -1;
-			heap.add(target);
-			while (!heap.isEmpty()) {
-				int n1 = heap.poll();
-				visited[n1] = true;
-				if (n1 == id) break;
-				/*if ((n1 != target) && graph().node(n1).hasRole(Node.ROLE_CONSUMER)) continue;*/
-				for (Channel ch : graph().node(n1).channels()) {
-					if (!localChannels.contains(ch.getID())) continue; // TODO maybe bloom filter?
-					int n2 = ch.getOtherNode(n1);
-					if (visited[n2]) continue;
-					int n2Hops = hops[n1] + 1;
-					if (n2Hops >= hops[n2]) continue;	
-					hops[n2] = n2Hops;
-					prev[n2] = n1;
-					heap.add(n2);
-				}
-			}
-			if (visited[id]) {
-				LinkedList<Integer> path = new LinkedList<>();
-				int nd = id;
-				while (nd >= 0) {
-					path.add(nd);
-					nd = prev[nd];
-				}
-				return path;
-			}
-			return null;
+		public int[] getPathTo(int target) {
+			search.clear();
+			addChannelsTo(search);
+			return search.findPath(id, target);
 		}
 	}
 	
@@ -226,6 +205,10 @@ public class FlareRouting extends RoutingAlgorithm {
 		}
 	}
 	
+	/** Messages maintaining resets, beacons and subscriptions (see RoutingManagementTraffic) **/
+	public abstract class ManagementMessage extends Message {
+	}
+	
 	// UPDATE PROPAGATION (to neighbors and subscribers)
 	
 	/** Triggers topology forwarding **/
@@ -235,10 +218,12 @@ public class FlareRouting extends RoutingAlgorithm {
 			FlareNode lg = flareNodes.get(node);		
 			if (lg.channelUpdates.size() == 0 && lg.routingUpdates.size() == 0) return;
 			//System.out.println("PROP " + node + " > "+lg.neighbors()+": " + lg.channelUpdates.size() + " updates");
-			lg.neighbors().stream().forEach(n -> {
-				new NeighborUpdate(lg.routingUpdates, lg.channelUpdates) 
+			// one copy of the updates, shared by all neighbor messages
+			List<ChannelStateUpdate> updates = new ArrayList<>(lg.channelUpdates);
+			for (int n : graph().node(node).neighbors()) {
+				new NeighborUpdate(lg.routingUpdates, updates) 
 					.send(node, n, sim); // TODO routing updates w/o those sent by neighbor
-			});
+			}
 			lg.channelUpdates.forEach(u -> {
 				lg.subscribers.forEach(s ->
 					new DynamicInfo(u.channel).send(node, s, sim));
@@ -251,10 +236,10 @@ public class FlareRouting extends RoutingAlgorithm {
 	/** Topology gossiping. Shares foreign static link state updates **/
 	public class NeighborUpdate extends Message {
 		//private List<Object> routingTableUpdates;
-		private List<ChannelStateUpdate> channelStateUpdates;
+		private List<ChannelStateUpdate> channelStateUpdates; // read only, may be shared
 		public NeighborUpdate(List<Object> routingTableUpdates, List<ChannelStateUpdate> channelStateUpdates) {
-			//this.routingTableUpdates = new LinkedList<>(routingTableUpdates);
-			this.channelStateUpdates = new LinkedList<>(channelStateUpdates);
+			//this.routingTableUpdates = new ArrayList<>(routingTableUpdates);
+			this.channelStateUpdates = channelStateUpdates;
 		}
 		@Override
 		public void run() {
@@ -282,28 +267,28 @@ public class FlareRouting extends RoutingAlgorithm {
 		public void run() {
 			for (Node node : graph().nodes()) {
 				FlareNode lg = flareNodes.get(node.getID());
-				Set<Integer> channelIds = lg.channelStates.values().stream()
-					.map(ch -> ch.getID()).collect(Collectors.toSet());
+				BitSet channelIds = new BitSet(graph().channels().size());
+				lg.addChannelsTo(channelIds);
 				node.neighborsList().stream().forEach(neighbor -> {
 					new NeighborReset(channelIds)
 						.send(node.getID(), neighbor, sim);
 				});
 			}
-			new TickReset().after(RESET_INTERVAL, sim);
+			new TickReset().afterTimer(RESET_INTERVAL, sim);
 		}
 	}
 	
 	/** Requests updates for all channels except the given ones **/
-	public class NeighborReset extends Message {
-		private Set<Integer> channels;
-		public NeighborReset(Set<Integer> channels) {
+	public class NeighborReset extends ManagementMessage {
+		private BitSet channels;
+		public NeighborReset(BitSet channels) {
 			this.channels = channels;
 		}
 		@Override
 		public void run() {
 			FlareNode lg = flareNodes.get(node);
-			List<ChannelStateUpdate> updates = lg.channelStates.values().stream()
-				.filter(ch -> !channels.contains(ch.getID()))
+			List<ChannelStateUpdate> updates = lg.channelStates.values()
+				.filter(ch -> !channels.get(ch.getID()))
 				.map(ch -> new ChannelStateUpdate(ch, 0))
 				.collect(Collectors.toList());
 			new NeighborUpdate(null, updates); // TODO routing table updates?
@@ -321,14 +306,14 @@ public class FlareRouting extends RoutingAlgorithm {
 			for (Node node : graph().nodes()) {
 				for (int i = 0; i < BEACON_REACTIVATE_COUNT; i++) {
 					FlareNode lg = flareNodes.get(node.getID());
-					int beacon = random.getOne(lg.nodes);
+					int beacon = lg.nodes.get(random.getInt(lg.nodes.size()));
 					if (beacon != node.getID())
-						new BeaconRequest(lg.getPathTo(beacon).size(),
-							new LinkedList<>(lg.beacons))
+						new BeaconRequest(lg.getPathTo(beacon).length,
+							new ArrayList<>(lg.beacons))
 							.send(node.getID(), beacon, sim);
 				}
 			}
-			new TickBeacons().after(BEACON_INTERVAL, sim);
+			new TickBeacons().afterTimer(BEACON_INTERVAL, sim);
 		}
 	}
 	
@@ -336,7 +321,7 @@ public class FlareRouting extends RoutingAlgorithm {
 	 * A beacon request. In this implementation, the message is sent directly
 	 * instead of via onion routing.
 	 **/
-	public class BeaconRequest extends Message {
+	public class BeaconRequest extends ManagementMessage {
 		private int hops;
 		private List<Beacon> excluded;
 		public BeaconRequest(int hops, List<Beacon> excluded) {
@@ -347,13 +332,17 @@ public class FlareRouting extends RoutingAlgorithm {
 		public void run() {
 			FlareNode lg = flareNodes.get(node);
 			int distance2me = distance(sender, node);
-			int altBeacon = lg.nodes.stream()
-				.map(id -> new Pair<Integer,Integer>(id, distance(sender, id)))
-				.filter(p -> p.second < distance2me && p.first != sender
-					&& !excluded.stream().anyMatch(e -> e.id == p.first))
-				.sorted((p1, p2) -> p1.second - p2.second)
-				.map(p -> p.first)
-				.findFirst().orElse(-1);
+			// closest known node to the sender, if closer than us
+			int altBeacon = -1, altDistance = distance2me;
+			for (int i = 0; i < lg.nodes.size(); i++) {
+				int id = lg.nodes.get(i);
+				int d = distance(sender, id);
+				if (d < altDistance && id != sender
+						&& !excluded.stream().anyMatch(e -> e.id == id)) {
+					altBeacon = id;
+					altDistance = d;
+				}
+			}
 			List<Channel> altPath = lg.getChannelsTo(altBeacon);
 			if (altBeacon < 0 || hops + altPath.size() > MAX_BEACON_DISTANCE) {
 				// accept request
@@ -370,7 +359,7 @@ public class FlareRouting extends RoutingAlgorithm {
 	 * or a beacon alternative. In this implementation, the message is sent directly
 	 * instead of via onion routing.
 	 */
-	public class BeaconAck extends Message {
+	public class BeaconAck extends ManagementMessage {
 		private int altBeacon;
 		private List<Channel> channels;
 		public BeaconAck(int altBeacon, List<Channel> channels) {
@@ -385,8 +374,8 @@ public class FlareRouting extends RoutingAlgorithm {
 				for (Channel ch : channels)
 					lg.setChannel(ch);
 				if (lg.nodes.contains(altBeacon))
-					new BeaconRequest(lg.getPathTo(altBeacon).size(),
-						new LinkedList<>(lg.beacons)).send(node, altBeacon, sim);
+					new BeaconRequest(lg.getPathTo(altBeacon).length,
+						new ArrayList<>(lg.beacons)).send(node, altBeacon, sim);
 				return;
 			}
 			// try to adopt beacon
@@ -424,9 +413,9 @@ public class FlareRouting extends RoutingAlgorithm {
 				// we want subscriptions to all beacons and paths to them
 				FlareNode lg = flareNodes.get(node.getID());
 				List<Integer> subscribedNew = lg.beacons.stream()
-					.flatMap(beacon -> lg.getPathTo(beacon.id).stream())
-					.collect(Collectors.toList());
-				subscribedNew.remove(new Integer(node.getID()));
+					.flatMapToInt(beacon -> IntStream.of(lg.getPathTo(beacon.id)))
+					.boxed().collect(Collectors.toList());
+				subscribedNew.remove(Integer.valueOf(node.getID()));
 				// add new subscriptions, remove old ones
 				lg.subscribed.stream()
 					.filter(n -> !subscribedNew.contains(n))
@@ -436,18 +425,18 @@ public class FlareRouting extends RoutingAlgorithm {
 					.forEach(id -> new Subscribe().send(lg.id, id, sim));
 				lg.subscribed = subscribedNew;
 			}
-			new TickSubscribe().after(SUBSCRIBE_INTERVAL, sim);
+			new TickSubscribe().afterTimer(SUBSCRIBE_INTERVAL, sim);
 		}
 	}
 	
 	/** Tells a node that we want to get regular dynamic info **/
-	public class Subscribe extends Message {
+	public class Subscribe extends ManagementMessage {
 		@Override
 		public void run() {
 			FlareNode lg = flareNodes.get(node);
 			lg.subscribers.add(sender);
 			// immediately inform about owned channels
-			for (Channel ch : lg.channelStates.values()) {
+			for (Channel ch : lg.channelStates) {
 				if (ch.getNode1() == node || ch.getNode2() == node)
 					new DynamicInfo(ch).send(node, sender, sim);
 			}
@@ -456,16 +445,16 @@ public class FlareRouting extends RoutingAlgorithm {
 	}
 	
 	/** Tells a node that we don't want regular channel updates anymore **/
-	public class Unsubscribe extends Message {
+	public class Unsubscribe extends ManagementMessage {
 		@Override
 		public void run() {
 			FlareNode lg = flareNodes.get(node);
-			lg.subscribers.remove(new Integer(sender));
+			lg.subscribers.remove(Integer.valueOf(sender));
 		}
 	}
 	
 	/** Update sent to subscribers **/
-	public class DynamicInfo extends Message {
+	public class DynamicInfo extends ManagementMessage {
 		private Channel channel;
 		public DynamicInfo(Channel channel) {
 			this.channel = channel;
@@ -483,22 +472,22 @@ public class FlareRouting extends RoutingAlgorithm {
 	
 	/** Requests topology from a beacon **/
 	public class ChannelStatesRequest extends Message {
-		private Consumer<Collection<Channel>> handler;
-		public ChannelStatesRequest(Consumer<Collection<Channel>> handler) {
+		private Consumer<Iterable<Channel>> handler;
+		public ChannelStatesRequest(Consumer<Iterable<Channel>> handler) {
 			this.handler = handler;
 		}
 		@Override
 		public void run() {
 			FlareNode lg = flareNodes.get(node);
-			new ChannelStatesResponse(handler, lg.channelStates.values()).send(node, sender, sim);
+			new ChannelStatesResponse(handler, lg.channelStates).send(node, sender, sim);
 		}
 	}
 
 	/** Topology response from a beacon **/
 	public class ChannelStatesResponse extends Message {
-		private Consumer<Collection<Channel>> handler;
-		private Collection<Channel> channels;
-		public ChannelStatesResponse(Consumer<Collection<Channel>> handler, Collection<Channel> channels) {
+		private Consumer<Iterable<Channel>> handler;
+		private Iterable<Channel> channels; // the beacon's current view
+		public ChannelStatesResponse(Consumer<Iterable<Channel>> handler, Iterable<Channel> channels) {
 			this.handler = handler;
 			this.channels = channels;
 		}
@@ -512,7 +501,13 @@ public class FlareRouting extends RoutingAlgorithm {
 	
 	@Override
 	public long estimateStorage() {
-		return 0;
+		long storage = 0;
+		for (FlareNode lg : flareNodes) {
+			// channel ID and snapshot reference per channel, node IDs, beacons, subscriptions
+			storage += lg.channelStates.size() * 2 * 32 + lg.nodes.size() * 32
+				+ lg.beacons.size() * 2 * 32 + (lg.subscribers.size() + lg.subscribed.size()) * 32;
+		}
+		return storage;
 	}
 
 	@Override
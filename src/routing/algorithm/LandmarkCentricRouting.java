@@ -1,15 +1,20 @@
 package routing.algorithm;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.stream.IntStream;
 
 import core.event.Event;
 import core.event.Message;
+import graph.Channel;
 import graph.Node;
 import payment.Payment;
+import routing.util.ChannelChanges;
+import routing.util.ShortestPathTreeRepair;
 import routing.util.SpanningTreeGenerator;
 import routing.util.SpanningForest;
-import utility.lib.Lists;
+import routing.util.TreeMaintenance;
 
 /** Uses a set of global bidirectional landmarks for finding paths **/
 public class LandmarkCentricRouting extends RoutingAlgorithm {
@@ -18,32 +23,52 @@ public class LandmarkCentricRouting extends RoutingAlgorithm {
 	private int landmarkCount;
 	private BiLandmark[] landmarks;
 	private List<Node> bridges;
+	private int[] pathBuffer;
+	private TreeMaintenance maintenance;
+	private ChannelChanges changes;
 	
 	/** Uses a set of global bidirectional landmarks for finding paths **/
 	public LandmarkCentricRouting(float updateInterval, int landmarkCount) {
+		this(updateInterval, landmarkCount, TreeMaintenance.REBUILD);
+	}
+	
+	/**
+	 * Uses a set of global bidirectional landmarks for finding paths,
+	 * whose trees are rebuilt or repaired (see TreeMaintenance)
+	 */
+	public LandmarkCentricRouting(float updateInterval, int landmarkCount, TreeMaintenance maintenance) {
 		this.interval = updateInterval;
 		this.landmarkCount = landmarkCount;
-	}	
+		this.maintenance = maintenance;
+	}
 	
 	@Override
 	public void prepare() {
 		landmarks = new BiLandmark[landmarkCount];
+		pathBuffer = new int[graph().size()];
 		bridges = graph().nodesWithRole(Node.ROLE_BRIDGE);
 		if (bridges.isEmpty())
 			throw new IllegalStateException("No bridge node present");
+		changes = (maintenance != TreeMaintenance.REBUILD) ? new ChannelChanges(sim) : null;
 		IntStream.range(0, landmarks.length)
 			.forEach(i -> landmarks[i] = new BiLandmark(() -> {}));
-		new RenewLandmark(0).after(interval, sim);
+		if (maintenance != TreeMaintenance.CONTINUOUS_REPAIR)
+			new RenewLandmark(0).afterTimer(interval, sim);
 	}
 	
 	@Override
 	public void findPaths(Payment p) {
+		if (maintenance == TreeMaintenance.CONTINUOUS_REPAIR) {
+			Collection<Channel> changed = changes.takePending();
+			if (!changed.isEmpty())
+				for (BiLandmark lm : landmarks)
+					lm.repair(changed);
+		}
 		for (BiLandmark lm : landmarks) {
 			if (lm.toRoot == null || lm.fromRoot == null) continue;
-			int[] path1 = lm.toRoot.getPathFrom(p.getSource(), true),
-				  path2 = lm.fromRoot.getPathTo(p.getTarget(), false);
-			if (path1 == null || path2 == null) continue;
-			p.addPath(Lists.shortenPath(Lists.concat(path1, path2)));
+			int length = SpanningForest.getShortcutPath(lm.toRoot, lm.fromRoot,
+				p.getSource(), p.getTarget(), false, pathBuffer);
+			p.addPath(Arrays.copyOf(pathBuffer, length));
 		}
 		
 		/*for (BiLandmark lm : landmarks) {
@@ -63,20 +88,39 @@ public class LandmarkCentricRouting extends RoutingAlgorithm {
 	public class BiLandmark {
 		private final int root;
 		public SpanningForest toRoot, fromRoot;
+		private SpanningTreeGenerator toRootGenerator, fromRootGenerator;
+		private ShortestPathTreeRepair toRootRepair, fromRootRepair;
+		private int repairedAt;
 		private BiLandmark(Runnable doneHandler) {
 			root = random.getOne(bridges).getID();
 			toRoot = fromRoot = null;
-			new SpanningTreeGenerator(sim, sim.inverseCosts(), root, t -> {
+			repairedAt = (changes != null) ? changes.now() : 0;
+			toRootGenerator = new SpanningTreeGenerator(sim, sim.inverseWeights(), root, t -> {
 				toRoot = t;
 				if (fromRoot != null)
 					doneHandler.run();
 			});
-			new SpanningTreeGenerator(sim, sim.costs(), root, t -> {
+			fromRootGenerator = new SpanningTreeGenerator(sim, sim.weights(), root, t -> {
 				fromRoot = t;
 				if (toRoot != null)
 					doneHandler.run();
 			});
 		}
+		/** Repairs both trees (once created) after the routing costs of channels changed **/
+		private void repair(Collection<Channel> changed) {
+			if (toRoot == null || fromRoot == null) return;
+			if (toRootRepair == null) {
+				// first repair: all changes since the trees were started
+				toRootRepair = toRootGenerator.getRepair();
+				fromRootRepair = fromRootGenerator.getRepair();
+				toRoot = toRootRepair.getTree();
+				fromRoot = fromRootRepair.getTree();
+				changed = changes.since(repairedAt);
+			}
+			repairedAt = changes.now();
+			toRootRepair.repair(changed);
+			fromRootRepair.repair(changed);
+		}
 	}
 	
 	/** Periodically exchanges one landmark with a new one **/
@@ -86,9 +130,15 @@ public class LandmarkCentricRouting extends RoutingAlgorithm {
 			this.index = index;
 		}
 		@Override
-		public void run() {		
-			landmarks[index] = new BiLandmark(() -> completed());
-			new RenewLandmark((index + 1) % landmarks.length).after(interval, sim);
+		public void run() {
+			if (maintenance == TreeMaintenance.REPAIR) {
+				BiLandmark lm = landmarks[index];
+				lm.repair(changes.since(lm.repairedAt));
+				completed();
+			} else {
+				landmarks[index] = new BiLandmark(() -> completed());
+			}
+			new RenewLandmark((index + 1) % landmarks.length).afterTimer(interval, sim);
 		}
 	}
 	
@@ -119,7 +169,9 @@ public class LandmarkCentricRouting extends RoutingAlgorithm {
 
 	@Override
 	public String toString() {
-		return String.format("LandmarkCentricRouting(%f, %d)", interval, landmarkCount);
+		return (maintenance == TreeMaintenance.REBUILD)
+			? String.format("LandmarkCentricRouting(%f, %d)", interval, landmarkCount)
+			: String.format("LandmarkCentricRouting(%f, %d, %s)", interval, landmarkCount, maintenance);
 	}
 	
 	public BiLandmark[] getLandmarks() {
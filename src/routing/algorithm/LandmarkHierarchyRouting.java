@@ -2,15 +2,15 @@ package routing.algorithm;
 
 import payment.Payment;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Arrays;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import core.event.Message;
 import core.event.RepeatedLocalEvent;
+import routing.util.LandmarkAddress;
+import routing.util.PrefixTable;
+import utility.lib.IntHashMap;
 import utility.lib.Lists;
 import utility.lib.Network;
 
@@ -28,6 +28,7 @@ public class LandmarkHierarchyRouting extends RoutingAlgorithm {
 	private final int MAX_CHILDREN = 5;
 	private float interval;
 	private ArrayList<Landmark> landmarks;
+	private int[] pathBuffer;
 	
 
 	public LandmarkHierarchyRouting(float updateInterval) {
@@ -37,21 +38,24 @@ public class LandmarkHierarchyRouting extends RoutingAlgorithm {
 	@Override
 	public void prepare() {
 		landmarks = Lists.initArray(sim.graph().size(), id -> new Landmark(id));
+		pathBuffer = new int[sim.graph().size()];
 		for (Landmark lm : landmarks) {
-			new LandmarkManage().interval(interval).at(lm.id).after(0.1f * random.getFloat(), sim);
+			new LandmarkManage().interval(interval).at(lm.id).afterTimer(0.1f * random.getFloat(), sim);
 		}
 	}
 	
 	@Override
 	public void findPaths(Payment p) {
-		String address = landmarks.get(p.getTarget()).address;
-		List<Integer> path = new ArrayList<>();
+		long address = landmarks.get(p.getTarget()).address;
+		int length = 0;
 		int node = p.getSource();
-		while (node >= 0) {
-			path.add(node);
+		while (node >= 0 && length < pathBuffer.length) {
+			pathBuffer[length++] = node;
 			node = landmarks.get(node).getNextHop(address);
 		}
-		p.addPath(Lists.array(path));
+		// no path if the target has no address yet or the tables lead elsewhere
+		if (length > 1 && pathBuffer[length - 1] == p.getTarget())
+			p.addPath(Arrays.copyOf(pathBuffer, length));
 		p.selectRoutes();
 	}
 	
@@ -62,11 +66,11 @@ public class LandmarkHierarchyRouting extends RoutingAlgorithm {
 	
 	/** A landmark as used in the landmark hierarchy. Note that every node is a landmark. **/
 	public class Landmark {
-		public String address, oldAddress;
+		public long address, oldAddress; // see LandmarkAddress
 		public int id, level, radius, parent;
-		HashMap<String, LandmarkEntry> routingTable;
-		HashMap<Integer, LandmarkEntry> mgmtTable;
-		HashSet<LandmarkEntry> changedEntries;
+		PrefixTable routingTable; // address -> landmark ID
+		IntHashMap<LandmarkEntry> mgmtTable;
+		ArrayList<LandmarkEntry> changedEntries;
 		float lastParentChange, lastHeartbeat;
 		int[] children;
 		boolean changed;
@@ -77,12 +81,12 @@ public class LandmarkHierarchyRouting extends RoutingAlgorithm {
 			parent = -1;
 			level = 0;
 			children = Lists.initIntArray(MAX_CHILDREN, -1);
-			address = null;
-			oldAddress = null;
+			address = LandmarkAddress.NONE;
+			oldAddress = LandmarkAddress.NONE;
 			radius = getInitialRadius();
-			routingTable = new HashMap<>();
-			mgmtTable = new HashMap<>();
-			changedEntries = new HashSet<>();
+			routingTable = new PrefixTable();
+			mgmtTable = new IntHashMap<>();
+			changedEntries = new ArrayList<>();
 			changed = true;
 			lastParentChange = lastHeartbeat = 0;
 		}
@@ -95,13 +99,9 @@ public class LandmarkHierarchyRouting extends RoutingAlgorithm {
 		 * Returns the ID of the next hop towards a given landmark address.
 		 * @return ID of next node (-1 if unknown or arrived)
 		 */
-		public int getNextHop(String address) {
-			String prefix = address;
-			while (!routingTable.containsKey(prefix)) {
-				prefix = prefix.substring(0, prefix.length() - 2);
-				if (prefix.length() == 0)  return -1;
-			}
-			return (prefix.length() > 0) ? routingTable.get(prefix).nextHop : -1;
+		public int getNextHop(long address) {
+			int landmark = routingTable.getLongestPrefix(address);
+			return (landmark >= 0) ? mgmtTable.get(landmark).nextHop : -1;
 		}
 
 		/** Called periodically to do tasks like elections **/
@@ -114,12 +114,14 @@ public class LandmarkHierarchyRouting extends RoutingAlgorithm {
 			// forward foreign updates
 			for (LandmarkEntry e : changedEntries) {
 				if (e.ttl > 0) {
-					Network.flood(id, e.senders, sim, (n) ->
+					Network.flood(id, e.senders, e.senderCount, sim, (n) ->
 						new LandmarkUpdate(e.id, e.address,
 							e.level, e.ttl - 1, e.satisfied,
 							e.distance + 1, e.freePlaces, e.timestamp));
 				}
 			}
+			for (LandmarkEntry e : changedEntries)
+				e.changed = false;
 			changedEntries.clear();
 
 			// childless demotion
@@ -133,7 +135,7 @@ public class LandmarkHierarchyRouting extends RoutingAlgorithm {
 			// promotion
 			if (parentChangeAllowed() && parent < 0) {
 				if (electable(level, level).count() < 2
-						&& mgmtTable.values().stream().noneMatch(e -> (e.level > level))) {
+						&& mgmtTable.values().noneMatch(e -> (e.level > level))) {
 					// we're at the global level, no more promotion
 					sendUpdate();
 				} else if (electable(level, level).filter(e -> !e.satisfied)
@@ -144,11 +146,13 @@ public class LandmarkHierarchyRouting extends RoutingAlgorithm {
 			
 			if (changed || lastHeartbeat > 100f) {
 				sendUpdate();
-				// remove outdated entries
-				List<LandmarkEntry> oldEntries = mgmtTable.values().stream()
-					.filter(e -> e.timestamp < sim.getTime() - 100f)
-					.collect(Collectors.toList());
-				oldEntries.forEach(e -> mgmtTable.remove(e.id));
+				// remove outdated entries (and their routes)
+				mgmtTable.removeIf(e -> {
+					if (e.timestamp >= sim.getTime() - 100f) return false;
+					if (routingTable.get(e.address) == e.id)
+						routingTable.remove(e.address);
+					return true;
+				});
 			}
 		}
 		
@@ -158,7 +162,10 @@ public class LandmarkHierarchyRouting extends RoutingAlgorithm {
 			// update entry
 			LandmarkEntry entry = digest(m);		
 			if (entry == null) return;
-			changedEntries.add(entry);
+			if (!entry.changed) {
+				entry.changed = true;
+				changedEntries.add(entry);
+			}
 			// we can't have a non-L+1 parent
 			if (m.source == parent && m.level != level + 1) {
 				parent = -1;
@@ -190,8 +197,8 @@ public class LandmarkHierarchyRouting extends RoutingAlgorithm {
 		private boolean setParent(int newParent) {
 			if (newParent < 0) return false;
 			// TODO: child application should be done via 3-way handshake
-			String newAddress = landmarks.get(newParent).addChild(id);
-			if (newAddress != null) {
+			long newAddress = landmarks.get(newParent).addChild(id);
+			if (newAddress != LandmarkAddress.NONE) {
 				if (parent >= 0)
 					landmarks.get(parent).removeChild(id);
 				parent = newParent;
@@ -240,16 +247,16 @@ public class LandmarkHierarchyRouting extends RoutingAlgorithm {
 				.mapToInt(e -> e.id).findFirst().orElse(-1));
 		}
 		
-		/** Adds a child, then returns assigned address (may fail by giving null) **/
-		private String addChild(int child) {
+		/** Adds a child, then returns assigned address (may fail by giving NONE) **/
+		private long addChild(int child) {
 			int slot = -1;
 			for (int i = 0; i < children.length; i++) {
 				if (children[i] < 0) slot = i;
 			}
-			if (slot < 0) return null;
+			if (slot < 0) return LandmarkAddress.NONE;
 			children[slot] = child;
 			changed = true;
-			return address + Integer.toHexString(slot);
+			return LandmarkAddress.child(address, slot);
 		}
 		
 		/** Removes a child **/
@@ -270,20 +277,21 @@ public class LandmarkHierarchyRouting extends RoutingAlgorithm {
 				mgmtTable.put(msg.source, e);
 			}
 			if (Float.compare(e.timestamp, msg.timestamp) == 0)
-				e.senders.add(msg.getSender());
+				e.addSender(msg.getSender());
 			if (Float.compare(e.timestamp, msg.timestamp) >= 0)
 				return null;
 			// new message: update general info
-			e.senders.clear();
+			e.senderCount = 0;
 			if (msg.getSender() >= 0)
-				e.senders.add(msg.getSender());
+				e.addSender(msg.getSender());
 			e.id = msg.source;
 			e.level = msg.level;
 			e.freePlaces = msg.freePlaces;
 			e.satisfied = msg.satisfied;
-			if ((msg.address != null) && (e.address != msg.address)) {	
-				routingTable.remove(e.address);
-				routingTable.put(msg.address, e);
+			if ((msg.address != LandmarkAddress.NONE) && (e.address != msg.address)) {
+				if (routingTable.get(e.address) == e.id)
+					routingTable.remove(e.address);
+				routingTable.put(msg.address, e.id);
 				e.address = msg.address;
 			}
 			// update next hop info?
@@ -309,7 +317,7 @@ public class LandmarkHierarchyRouting extends RoutingAlgorithm {
 		/** Returns all known landmarks of the given level within our max election distance **/
 		private Stream<LandmarkEntry> electable(int mylevel, int level) {
 			int dmax = (int) Math.pow(2, mylevel);
-			return mgmtTable.values().stream()
+			return mgmtTable.values()
 				.filter(e -> e.distance <= dmax && e.level == level);
 		}
 		
@@ -341,13 +349,21 @@ public class LandmarkHierarchyRouting extends RoutingAlgorithm {
 	
 	/** The view one landmark has of another **/
 	public class LandmarkEntry {
-		HashSet<Integer> senders;
-		int ttl, id, distance, nextHop, level, freePlaces;
+		int[] senders; // neighbors which sent the latest update
+		int senderCount, ttl, id, distance, nextHop, level, freePlaces;
 		float timestamp;
-		String address;
-		boolean satisfied;
+		long address;
+		boolean satisfied, changed;
 		public LandmarkEntry() {
-			senders = new HashSet<>();
+			senders = new int[2];
+			address = LandmarkAddress.NONE;
+		}
+		private void addSender(int sender) {
+			for (int i = 0; i < senderCount; i++)
+				if (senders[i] == sender) return;
+			if (senderCount == senders.length)
+				senders = Arrays.copyOf(senders, 2 * senders.length);
+			senders[senderCount++] = sender;
 		}
 	}
 	
@@ -365,8 +381,8 @@ public class LandmarkHierarchyRouting extends RoutingAlgorithm {
 		public int source, level, ttl, distance, freePlaces;
 		public boolean satisfied;
 		public float timestamp;
-		public final String address;		
-		public LandmarkUpdate(int source, final String address, int level, int ttl,
+		public final long address;
+		public LandmarkUpdate(int source, final long address, int level, int ttl,
 				boolean satisfied, int distance, int freePlaces, float timestamp) {
 			this.source = source;
 			this.address = address;
@@ -391,6 +407,6 @@ public class LandmarkHierarchyRouting extends RoutingAlgorithm {
 	
 	@Override
 	public String toString() {
-		return String.format("LandmarkHierarchyRouting(%f, %d)", interval);
+		return String.format("LandmarkHierarchyRouting(%f)", interval);
 	}
 }
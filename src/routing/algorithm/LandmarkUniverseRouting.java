@@ -1,14 +1,19 @@
 package routing.algorithm;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.stream.IntStream;
 
 import core.event.Event;
+import graph.Channel;
 import graph.Node;
 import payment.Payment;
+import routing.util.ChannelChanges;
+import routing.util.ShortestPathTreeRepair;
 import routing.util.SpanningForest;
 import routing.util.SpanningForestGenerator;
-import utility.lib.Lists;
+import routing.util.TreeMaintenance;
 
 /**
  * Creates a hierarchy of landmark forests, with 2^i trees on each level.
@@ -21,38 +26,61 @@ public class LandmarkUniverseRouting extends RoutingAlgorithm {
 	private float interval;
 	private LandmarkUniverse[] universes;
 	private List<Node> bridges;
+	private int[] pathBuffer;
+	private TreeMaintenance maintenance;
+	private ChannelChanges changes;
 	
 	/**
 	 * Creates a hierarchy of landmark forests, with 2^i trees on each level.
 	 * Tries to find paths on all levels, starting with the highest one.
 	 */
 	public LandmarkUniverseRouting(float updateInterval, int universeCount, int levelCount) {
+		this(updateInterval, universeCount, levelCount, TreeMaintenance.REBUILD);
+	}
+	
+	/**
+	 * Creates a hierarchy of landmark forests, with 2^i trees on each level,
+	 * whose forests are rebuilt or repaired (see TreeMaintenance)
+	 */
+	public LandmarkUniverseRouting(float updateInterval, int universeCount, int levelCount,
+			TreeMaintenance maintenance) {
 		this.universeCount = universeCount;
 		this.levelCount = levelCount;
 		this.interval = updateInterval;
+		this.maintenance = maintenance;
 	}
 	
 	@Override
 	public void prepare() {
 		universes = new LandmarkUniverse[universeCount];
+		pathBuffer = new int[graph().size()];
 		bridges = graph().nodesWithRole(Node.ROLE_BRIDGE);
 		if (bridges.size() < Math.pow(2, levelCount)) {
 			throw new IllegalStateException("Not enough bridge nodes present");
 		}
+		changes = (maintenance != TreeMaintenance.REBUILD) ? new ChannelChanges(sim) : null;
 		IntStream.range(0, universes.length)
 			.forEach(i -> universes[i] = new LandmarkUniverse(() -> {}));
-		new RenewUniverse(0).after(interval, sim);
+		if (maintenance != TreeMaintenance.CONTINUOUS_REPAIR)
+			new RenewUniverse(0).afterTimer(interval, sim);
 	}
 	
 	@Override
 	public void findPaths(Payment p) {
+		if (maintenance == TreeMaintenance.CONTINUOUS_REPAIR) {
+			Collection<Channel> changed = changes.takePending();
+			if (!changed.isEmpty())
+				for (LandmarkUniverse u : universes)
+					u.repair(changed);
+		}
 		for (LandmarkUniverse u : universes) {
 			for (int lvl = 0; lvl < u.toRoots.length; lvl++) {
 				if (u.toRoots[lvl] == null || u.fromRoots[lvl] == null) continue;
-				int[] path1 = u.toRoots[lvl].getPathFrom(p.getSource(), true),
-					  path2 = u.fromRoots[lvl].getPathTo(p.getTarget(), true);
-				if (path1[path1.length - 1] != path2[0]) continue;
-				p.addPath(Lists.shortenPath(Lists.concat(path1, path2)));
+				SpanningForest up = u.toRoots[lvl], down = u.fromRoots[lvl];
+				if (up.getRoot(p.getSource()) != down.getRoot(p.getTarget())) continue;
+				int length = SpanningForest.getShortcutPath(up, down,
+					p.getSource(), p.getTarget(), true, pathBuffer);
+				p.addPath(Arrays.copyOf(pathBuffer, length));
 			}
 		}
 		p.selectRoutes();
@@ -61,13 +89,18 @@ public class LandmarkUniverseRouting extends RoutingAlgorithm {
 	/** A landmark universe **/
 	public class LandmarkUniverse {
 		public SpanningForest[] toRoots, fromRoots;
-		private int createdTrees;
+		private SpanningForestGenerator[] toRootGenerators, fromRootGenerators;
+		private ShortestPathTreeRepair[] toRootRepairs, fromRootRepairs;
+		private int createdTrees, repairedAt;
 		private Runnable doneHandler;
 		private LandmarkUniverse(Runnable doneHandler) {
 			toRoots = new SpanningForest[levelCount];
 			fromRoots = new SpanningForest[levelCount];
+			toRootGenerators = new SpanningForestGenerator[levelCount];
+			fromRootGenerators = new SpanningForestGenerator[levelCount];
 			this.doneHandler = doneHandler;
 			createdTrees = 0;
+			repairedAt = (changes != null) ? changes.now() : 0;
 			// add forests of 2^i landmarks per level	
 			int lmsAtLevel = 1;
 			for (int i = 0; i < levelCount; i++) {
@@ -75,11 +108,11 @@ public class LandmarkUniverseRouting extends RoutingAlgorithm {
 				int[] roots = random.getDistinct(bridges, lmsAtLevel)
 					.stream().mapToInt(b -> b.getID()).toArray();
 				toRoots[lvl] = fromRoots[lvl] = null;
-				new SpanningForestGenerator(sim, sim.costs(), roots, t -> {
+				toRootGenerators[lvl] = new SpanningForestGenerator(sim, sim.weights(), roots, t -> {
 					toRoots[lvl] = t;
 					treeCreated();
 				});
-				new SpanningForestGenerator(sim, sim.inverseCosts(), roots, t -> {
+				fromRootGenerators[lvl] = new SpanningForestGenerator(sim, sim.inverseWeights(), roots, t -> {
 					fromRoots[lvl] = t;
 					treeCreated();
 				});
@@ -92,6 +125,27 @@ public class LandmarkUniverseRouting extends RoutingAlgorithm {
 				doneHandler.run();
 			}
 		}
+		/** Repairs all forests (once created) after the routing costs of channels changed **/
+		private void repair(Collection<Channel> changed) {
+			if (createdTrees < levelCount * 2) return;
+			if (toRootRepairs == null) {
+				// first repair: all changes since the forests were started
+				toRootRepairs = new ShortestPathTreeRepair[levelCount];
+				fromRootRepairs = new ShortestPathTreeRepair[levelCount];
+				for (int lvl = 0; lvl < levelCount; lvl++) {
+					toRootRepairs[lvl] = toRootGenerators[lvl].getRepair();
+					fromRootRepairs[lvl] = fromRootGenerators[lvl].getRepair();
+					toRoots[lvl] = toRootRepairs[lvl].getTree();
+					fromRoots[lvl] = fromRootRepairs[lvl].getTree();
+				}
+				changed = changes.since(repairedAt);
+			}
+			repairedAt = changes.now();
+			for (int lvl = 0; lvl < levelCount; lvl++) {
+				toRootRepairs[lvl].repair(changed);
+				fromRootRepairs[lvl].repair(changed);
+			}
+		}
 	}
 	
 	/** Periodically exchanges one universe with a new one **/
@@ -102,8 +156,13 @@ public class LandmarkUniverseRouting extends RoutingAlgorithm {
 		}
 		@Override
 		public void run() {
-			universes[index] = new LandmarkUniverse(() -> completed());
-			new RenewUniverse((index + 1) % universes.length).after(interval, sim);
+			if (maintenance == TreeMaintenance.REPAIR) {
+				LandmarkUniverse u = universes[index];
+				u.repair(changes.since(u.repairedAt));
+			} else {
+				universes[index] = new LandmarkUniverse(() -> completed());
+			}
+			new RenewUniverse((index + 1) % universes.length).afterTimer(interval, sim);
 			completed();
 		}		
 	}
@@ -115,7 +174,9 @@ public class LandmarkUniverseRouting extends RoutingAlgorithm {
 
 	@Override
 	public String toString() {
-		return String.format("LandmarkUniverseRouting(%f, %d, %d)", interval, universeCount, levelCount);
+		return (maintenance == TreeMaintenance.REBUILD)
+			? String.format("LandmarkUniverseRouting(%f, %d, %d)", interval, universeCount, levelCount)
+			: String.format("LandmarkUniverseRouting(%f, %d, %d, %s)", interval, universeCount, levelCount, maintenance);
 	}
 	
 	public LandmarkUniverse[] getUniverses() {
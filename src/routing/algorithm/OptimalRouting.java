@@ -2,52 +2,93 @@ package routing.algorithm;
 
 import java.util.Arrays;
 import java.util.LinkedList;
-import java.util.PriorityQueue;
 
 import graph.Channel;
 import graph.Node;
+import graph.Topology;
 import payment.Payment;
+import routing.util.FeeBounds;
+import routing.util.FeeHierarchy;
+import routing.util.FeeLandmarks;
+import routing.util.IndexedHeap;
+import routing.util.SearchScratch;
 import utility.global.Config;
 import utility.lib.Lists;
 
-/** Gets the optimal singular route (without respecting decentrality) **/
+/**
+ * Gets the optimal singular route (without respecting decentrality).
+ * With landmarks, the search is an A* search with the ALT heuristic,
+ * which finds routes with the same fees, but settles fewer nodes.
+ * If FEE_BOUNDS is "hierarchy", the A* bounds come from a customizable
+ * contraction hierarchy (FeeHierarchy), which only needs the landmarks
+ * for the nodes of its core.
+ */
 public class OptimalRouting extends RoutingAlgorithm {
 	private double MAX_FEE_PERCENT;
+	private int landmarkCount;
+	private FeeBounds bounds;
+	private boolean boundsOutdated;
 	
 	// path finding temporary data
-	private boolean[] visited;
-	private long[] distance;
-	private int[] amount; // SAT
-	private int[] prev;
+	private SearchScratch search; // distance, amount (SAT), prev, visited
+	private IndexedHeap heap;
+	private int[] settled; // nodes settled by the last search
+	private int settledCount;
+	private Payment lastPayment;
+	
+	// query statistics
+	private long queries, settledNodes, queryTime;
+	
+	/** Plain Dijkstra search **/
+	public OptimalRouting() {
+		this(0);
+	}
+	
+	/** A* search with the given number of landmarks (0 = Dijkstra), see FEE_BOUNDS **/
+	public OptimalRouting(int landmarkCount) {
+		this.landmarkCount = landmarkCount;
+	}
 	
 	@Override
 	public void prepare() {
 		MAX_FEE_PERCENT = Config.getDouble("MAX_FEE_PERCENT");
-		visited = new boolean[graph().size()];
-		distance = new long[graph().size()];
-		amount = new int[graph().size()];
-		prev = new int[graph().size()];
+		search = new SearchScratch(graph().size());
+		heap = new IndexedHeap(graph().size());
+		settled = new int[graph().size()];
+		queries = settledNodes = queryTime = 0;
+		if (landmarkCount > 0) {
+			bounds = "hierarchy".equals(Config.get("FEE_BOUNDS"))
+				? new FeeHierarchy(graph(), landmarkCount, random)
+				: new FeeLandmarks(graph(), landmarkCount, random);
+			boundsOutdated = false;
+			sim.feePolicy().onFeeUpdate(ch -> boundsOutdated = true);
+		}
 	}
 
 	@Override
 	public void findPaths(Payment p) {	
-		Arrays.fill(visited, false);
-		Arrays.fill(distance, Long.MAX_VALUE);
-		Arrays.fill(amount, -1);
-		Arrays.fill(prev, -1);	
-		PriorityQueue<Integer> heap = new PriorityQueue<>(
-			(id1, id2) -> (int) (distance[id1] - distance[id2]));
+		long startTime = System.nanoTime();
+		if (boundsOutdated) {
+			bounds.customize();
+			boundsOutdated = false;
+		}
+		search.reset();
+		heap.clear();
+		settledCount = 0;
+		lastPayment = p;
+		Topology topology = graph().topology();
 		
 		// start search at target node
-		distance[p.getTarget()] = 0;
-		amount[p.getTarget()] = p.getAmount();
-		heap.add(p.getTarget());
+		search.reach(p.getTarget(), 0, p.getAmount(), -1);
+		heap.push(p.getTarget(), 0);
 		
 		while (!heap.isEmpty()) {		
 			// visit known node which is closest to target
 			int n1 = heap.poll();
-			int n1Amount = amount[n1];
-			visited[n1] = true;
+			int n1Amount = search.amount(n1);
+			search.visit(n1);
+			settled[settledCount++] = n1;
+			settledNodes++;
 			
 			// if it's the source we're finished
 			if (n1 == p.getSource()) break;
@@ -56,11 +97,12 @@ public class OptimalRouting extends RoutingAlgorithm {
 			if ((n1 != p.getTarget()) && graph().node(n1).hasRole(Node.ROLE_CONSUMER)) continue;
 			
 			// relaxate all edges
-			for (Channel ch : graph().node(n1).channels()) {
-				int n2 = ch.getOtherNode(n1);
+			for (int i = topology.begin(n1); i < topology.end(n1); i++) {
+				int n2 = topology.neighbor(i);
+				Channel ch = graph().channel(topology.channel(i));
 	
 				// TODO reject disabled, non-source channels
-				if (visited[n2] || !ch.canPay(n2, n1Amount)) continue;
+				if (search.isVisited(n2) || !ch.canPay(n2, n1Amount)) continue;
 			
 				// total fees too high / no timelock delta?
 				int n2Amount = n1Amount + ch.getFee(n2, n1Amount);
@@ -69,38 +111,81 @@ public class OptimalRouting extends RoutingAlgorithm {
 				
 				// new node distance not better?	
 				//long n2Dist = distance[node] + sim.costs().getCosts(ch, node, amount);
-				long n2Dist = distance[n1] + ch.getFee(n2, n1Amount);
-				if (n2Dist >= distance[n2]) continue;
+				long n2Dist = search.distance(n1) + ch.getFee(n2, n1Amount);
+				if (n2Dist >= search.distance(n2)) continue;
 				
 				// accept edge
-				distance[n2] = n2Dist;
-				amount[n2] = n2Amount;
-				prev[n2] = n1;
-				heap.add(n2);
+				search.reach(n2, n2Dist, n2Amount, n1);
+				heap.push(n2, (bounds == null) ? n2Dist
+					: n2Dist + bounds.lowerBound(p.getSource(), n2, p.getAmount()));
 			}
 		}
 		
 		// retrace found path
-		if (prev[p.getSource()] >= 0) {
+		if (search.prev(p.getSource()) >= 0) {
 			LinkedList<Integer> path = new LinkedList<>();
 			for (int node = p.getSource(); node != p.getTarget(); ) {
 				path.add(node);
-				node = prev[node];
+				node = search.prev(node);
 			}
 			path.add(p.getTarget());
 			p.addPath(Lists.array(path));
 		}
+		queries++;
+		queryTime += System.nanoTime() - startTime;
 		p.selectRoutes();
 	}
 	
+	/**
+	 * The channels between the nodes settled while searching the payment's
+	 * path (consumers other than its source and target stay leaves)
+	 */
+	@Override
+	public int[] getFlowChannels(Payment p) {
+		if (p != lastPayment) return super.getFlowChannels(p);
+		Topology topology = graph().topology();
+		int[] channels = new int[8];
+		int count = 0;
+		for (int k = 0; k < settledCount; k++) {
+			int n1 = settled[k];
+			if (!canForward(p, n1)) continue;
+			for (int i = topology.begin(n1); i < topology.end(n1); i++) {
+				int n2 = topology.neighbor(i);
+				if (n1 >= n2 || !search.isVisited(n2) || !canForward(p, n2)) continue;
+				if (count == channels.length)
+					channels = Arrays.copyOf(channels, 2 * count);
+				channels[count++] = topology.channel(i);
+			}
+		}
+		return Arrays.copyOf(channels, count);
+	}
+	
+	private boolean canForward(Payment p, int node) {
+		return node == p.getSource() || node == p.getTarget()
+			|| !graph().node(node).hasRole(Node.ROLE_CONSUMER);
+	}
+	
+	/** Average number of nodes settled per query **/
+	public double getAverageSettledNodes() {
+		return (queries > 0) ? settledNodes / (double) queries : 0;
+	}
+	
+	/** Average path finding time per query (microseconds) **/
+	public double getAverageQueryTime() {
+		return (queries > 0) ? queryTime / 1000.0 / queries : 0;
+	}
+	
 	@Override
 	public long estimateStorage() {
-		return graph().size() * (8 + 64 + 64 + 32);
+		return graph().size() * (32 + 32 + 64 + 32 + 32)
+			+ ((bounds != null) ? bounds.estimateStorage() : 0);
 	}
 	
 	@Override
 	public String toString() {
-		return "OptimalRouting()";
+		return (landmarkCount > 0)
+			? String.format("OptimalRouting(%d)", landmarkCount)
+			: "OptimalRouting()";
 	}
 	
 }
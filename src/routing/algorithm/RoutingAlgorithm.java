@@ -1,7 +1,9 @@
 package routing.algorithm;
 
 import core.Component;
+import graph.Channel;
 import payment.Payment;
+import utility.lib.IntHashSet;
 
 public abstract class RoutingAlgorithm extends Component {
 	
@@ -11,4 +13,19 @@ public abstract class RoutingAlgorithm extends Component {
 	
 	public abstract long estimateStorage();
 	
+	/**
+	 * IDs of the channels a payment may be split over by a flow based route
+	 * selection (called after findPaths), by default those of the found paths
+	 */
+	public int[] getFlowChannels(Payment p) {
+		IntHashSet channels = new IntHashSet();
+		for (int[] path : p.getPaths()) {
+			for (int i = 1; i < path.length; i++) {
+				Channel ch = graph().channel(path[i - 1], path[i]);
+				if (ch != null) channels.add(ch.getID());
+			}
+		}
+		return channels.toArray();
+	}
+	
 }
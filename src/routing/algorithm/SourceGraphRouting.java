@@ -1,11 +1,10 @@
 package routing.algorithm;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -15,8 +14,12 @@ import com.javamex.classmexer.MemoryUtil;
 import core.event.Event;
 import core.event.Message;
 import graph.Channel;
+import graph.ChannelStore;
 import graph.Node;
+import graph.Topology;
 import payment.Payment;
+import routing.util.IndexedHeap;
+import routing.util.SearchScratch;
 import utility.global.Config;
 import utility.lib.Lists;
 
@@ -31,11 +34,13 @@ public class SourceGraphRouting extends RoutingAlgorithm {
 	private int pathCount;
 	private ArrayList<LocalGraph> localGraphs;
 	
+	// shared base view; per channel the newest version and how many nodes see it
+	private Channel[] baseChannels, latestChannels;
+	private int[] knownBy;
+	
 	// path finding temporary data
-	private boolean[] visited;
-	private long[] distance;
-	private int[] amount;
-	private int[] prev;
+	private SearchScratch search;
+	private IndexedHeap heap;
 	
 	public SourceGraphRouting(double broadcastInterval, int pathCount) {
 		this.BROADCAST_INTERVAL = broadcastInterval;
@@ -45,12 +50,16 @@ public class SourceGraphRouting extends RoutingAlgorithm {
 	@Override
 	public void prepare() {
 		MAX_FEE_PERCENT = Config.getDouble("MAX_FEE_PERCENT");
-		visited = new boolean[graph().size()];
-		distance = new long[graph().size()];
-		amount = new int[graph().size()];
-		prev = new int[graph().size()];
-		LocalGraph localGraph = new LocalGraph();
-		localGraphs = Lists.initArray(graph().size(), i -> new LocalGraph(localGraph));
+		search = new SearchScratch(graph().size());
+		heap = new IndexedHeap(graph().size());
+		// one bulk copy of all channel states instead of a clone per channel
+		ChannelStore store = graph().channelStore().copy();
+		baseChannels = graph().channels().stream()
+			.map(ch -> ch.withStore(store).setTimestamp(0))
+			.toArray(Channel[]::new);
+		latestChannels = baseChannels.clone();
+		knownBy = Lists.initIntArray(baseChannels.length, graph().size());
+		localGraphs = Lists.initArray(graph().size(), i -> new LocalGraph());
 		
 		// flood on fee change
 		sim.feePolicy().onFeeUpdate(ch -> {
@@ -84,24 +93,19 @@ public class SourceGraphRouting extends RoutingAlgorithm {
 		// source local view of the graph
 		LocalGraph lg = localGraphs.get(source);
 		
-		Arrays.fill(visited, false);
-		Arrays.fill(distance, Long.MAX_VALUE);
-		//Arrays.fill(amount, -1); // not necessary to reset
-		//Arrays.fill(prev, -1); // not necessary to reset
-		
-		PriorityQueue<Integer> heap = new PriorityQueue<>(
-			(id1, id2) -> (int) (distance[id1] - distance[id2]));
+		search.reset();
+		heap.clear();
+		Topology topology = graph().topology();
 
 		// start search at target node
-		distance[target] = 0;
-		amount[target] = amt;
-		heap.add(target);
+		search.reach(target, 0, amt, -1);
+		heap.push(target, 0);
 
 		while (!heap.isEmpty()) {
 			// visit known node which is closest to target
 			int n1 = heap.poll();
-			int n1Amount = amount[n1];
-			visited[n1] = true;
+			int n1Amount = search.amount(n1);
+			search.visit(n1);
 			
 			// if it's the source we're finished
 			if (n1 == source) break;
@@ -110,13 +114,14 @@ public class SourceGraphRouting extends RoutingAlgorithm {
 			if ((n1 != target) && graph().node(n1).hasRole(Node.ROLE_CONSUMER)) continue;
 
 			// relaxate all edges
-			for (Channel ch : lg.nodeChannels[n1]) {
-				if (excludedChannels.contains(ch.getID())) continue;
+			for (int i = topology.begin(n1); i < topology.end(n1); i++) {
+				if (excludedChannels.contains(topology.channel(i))) continue;
 				
-				int n2 = ch.getOtherNode(n1);
+				int n2 = topology.neighbor(i);
+				Channel ch = lg.channel(topology.channel(i));
 				
 				// TODO reject disabled, non-source channels
-				if (visited[n2] || !ch.canPay(n2, n1Amount)) continue;
+				if (search.isVisited(n2) || !ch.canPay(n2, n1Amount)) continue;
 				
 				// total fees too high / no timelock delta?
 				int n2Amount = n1Amount + ch.getFee(n2, n1Amount);
@@ -125,23 +130,21 @@ public class SourceGraphRouting extends RoutingAlgorithm {
 				
 				// new node distance not better?	
 				//long n2Dist = distance[node] + sim.costs().getCosts(ch, node, amount);
-				long n2Dist = distance[n1] + ch.getFee(n2, n1Amount);
-				if (n2Dist >= distance[n2]) continue;
+				long n2Dist = search.distance(n1) + ch.getFee(n2, n1Amount);
+				if (n2Dist >= search.distance(n2)) continue;
 				
 				// accept edge		
-				distance[n2] = n2Dist;
-				amount[n2] = n2Amount;
-				prev[n2] = n1;
-				heap.add(n2);
+				search.reach(n2, n2Dist, n2Amount, n1);
+				heap.push(n2, n2Dist);
 			}
 		}
 		
 		// retrace found path
-		if (distance[source] < Long.MAX_VALUE) {
+		if (search.isReached(source)) {
 			LinkedList<Integer> path = new LinkedList<>();
 			for (int node = source; node != target; ) {
 				path.add(node);
-				node = prev[node];
+				node = search.prev(node);
 			}
 			path.add(target);
 			return path;
@@ -149,49 +152,50 @@ public class SourceGraphRouting extends RoutingAlgorithm {
 		return null;
 	}
 
-	/** Routing info data stored for each node **/
+	/**
+	 * Routing info data stored for each node.
+	 * Only holds the channel versions that differ from the shared base view.
+	 */
 	public class LocalGraph {
-		private Channel[][] nodeChannels;
+		private HashMap<Integer, Channel> overlay;
 		private HashSet<Channel> updates;
-		/** New LocalGraph from real graph **/
-		public LocalGraph() {		
-			nodeChannels = graph().nodes().stream()
-				.map(n -> n.channels().stream()
-					.map(ch -> ch.clone().setTimestamp(0))
-					.toArray(Channel[]::new))
-				.toArray(Channel[][]::new);
+		public LocalGraph() {
+			overlay = new HashMap<>();
 			updates = new HashSet<>();
 		}
-		/** Deep copy, but shares Channel objects **/
-		public LocalGraph(LocalGraph g) {		
-			nodeChannels = IntStream.range(0, g.nodeChannels.length)
-				.mapToObj(i -> g.nodeChannels[i].clone())
-				.toArray(Channel[][]::new);
-			updates = new HashSet<>();
+		/** Channel version as seen by this node **/
+		public Channel channel(int id) {
+			Channel ch = overlay.get(id);
+			return (ch != null) ? ch : baseChannels[id];
 		}
 		public void replaceChannels(Set<Channel> channels, int sender) {
 			for (Channel ch : channels) {
-				int i1 = -1, i2 = -1;
-				Channel[] c1 = nodeChannels[ch.getNode1()],
-						  c2 = nodeChannels[ch.getNode2()];	
-				for (int i = 0; i < c1.length; i++)
-					if (c1[i].getID() == ch.getID()) {
-						i1 = i;
-						break;
-					}
-				for (int i = 0; i < c2.length; i++)
-					if (c2[i].getID() == ch.getID()) {
-						i2 = i;
-						break;
-					}
-				Channel och = c1[i1];
-				c1[i1] = c2[i2] = ch;
+				int id = ch.getID();
+				Channel och = channel(id);
+				if (och == ch) continue;
+				overlay.put(id, ch);
 				if (ch.isNewerThan(och))
 					updates.add(ch);
+				// track how many nodes know the newest version
+				if (och == latestChannels[id])
+					knownBy[id]--;
+				if (ch.getTimestamp() > latestChannels[id].getTimestamp()) {
+					latestChannels[id] = ch;
+					knownBy[id] = 0;
+				}
+				if (ch == latestChannels[id] && ++knownBy[id] == localGraphs.size())
+					compact(id);
 			}
 		}
 	}
 	
+	/** Moves a channel version known by all nodes into the base view **/
+	private void compact(int id) {
+		baseChannels[id] = latestChannels[id];
+		for (LocalGraph lg : localGraphs)
+			lg.overlay.remove(id);
+	}
+	
 	/** Informs about channel changes via flooding **/
 	public class ChannelUpdate extends Message {
 		private Set<Channel> channels;
@@ -219,7 +223,7 @@ public class SourceGraphRouting extends RoutingAlgorithm {
 					lg.updates = new HashSet<>();
 				}
 			});
-			new ChannelBroadcastEpoch().after((float) BROADCAST_INTERVAL, sim);
+			new ChannelBroadcastEpoch().afterTimer((float) BROADCAST_INTERVAL, sim);
 		}	
 	}
 	
@@ -228,11 +232,13 @@ public class SourceGraphRouting extends RoutingAlgorithm {
 		int REFSIZE = 32; 
 		int channels = graph().channels().size();
 		int nodes = graph().size();
-		// array[E] of channels
-		long channelRAM = channels * (REFSIZE + MemoryUtil.memoryUsageOf(graph().channel(0)));
-		// array[V] of array, with each channel ID appearing twice in second layer
-		long nodemapRAM =  nodes * 32 + channels * 2 * 32;
-		return nodes * (channelRAM + nodemapRAM);
+		long channelSize = REFSIZE + MemoryUtil.memoryUsageOf(graph().channel(0));
+		// shared base view and version tracking, array[E] each
+		long baseRAM = channels * (channelSize + 2 * REFSIZE + 4);
+		// per node overlay map, with one entry per differing channel version
+		long overlayEntries = localGraphs.stream().mapToLong(lg -> lg.overlay.size()).sum();
+		long overlayRAM = nodes * 64 + overlayEntries * (channelSize + 3 * REFSIZE);
+		return baseRAM + overlayRAM;
 	}
 	
 	@Override
@@ -21,6 +21,11 @@ public class AdvancedRoutingCosts extends RoutingCosts {
 				+ capacityFactor * (1 - ch.getCapacity(sender) / ch.getCapacity()));  
 	}
 	
+	@Override
+	public boolean dependsOnBalance() {
+		return capacityFactor != 0;
+	}
+	
 	@Override
 	public String toString() {
 		return String.format("AdvancedRoutingCosts(%f, %f, %f)", baseFactor, rateFactor, capacityFactor);
@@ -10,6 +10,11 @@ public class HopRoutingCosts extends RoutingCosts {
 		return 1;
 	}
 
+	@Override
+	public boolean dependsOnBalance() {
+		return false;
+	}
+
 	@Override
 	public String toString() {
 		return "HopRoutingCosts()";
@@ -12,6 +12,11 @@ public abstract class RoutingCosts extends Component implements Cloneable {
 
 	public abstract long getCosts(Channel c, int sender);
 	
+	/** Whether the costs change with the channel balances (which are not announced) **/
+	public boolean dependsOnBalance() {
+		return true;
+	}
+	
 	public void setInvert(boolean invert) {
 		this.invert = invert;
 	}
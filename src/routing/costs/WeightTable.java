@@ -0,0 +1,60 @@
+package routing.costs;
+
+import java.util.Arrays;
+
+import graph.Channel;
+import graph.Graph;
+
+/**
+ * Routing costs of both directions of every channel, materialised in a
+ * primitive array indexed by channel ID and side (0 = sent by node 1).
+ * The entries are refreshed on fee and channel updates. Costs depending on
+ * the channel balances change with every payment without an update, so
+ * those are still calculated on every lookup.
+ * @author Josua
+ */
+public class WeightTable {
+
+	private final Graph graph;
+	private final RoutingCosts costs;
+	private final boolean live;
+	private long[] weights;
+
+	public WeightTable(Graph graph, RoutingCosts costs) {
+		this.graph = graph;
+		this.costs = costs;
+		this.live = costs.dependsOnBalance();
+		weights = new long[live ? 0 : 2 * graph.channels().size()];
+		if (!live)
+			graph.channels().forEach(ch -> set(ch));
+	}
+
+	/** Costs of sending over a channel **/
+	public long get(Channel ch, int sender) {
+		if (live)
+			return costs.getCosts(ch, sender);
+		return weights[2 * ch.getID() + (sender == ch.getNode1() ? 0 : 1)];
+	}
+
+	/** Costs of sending over a channel from the given side (0 = node 1) **/
+	public long get(int channel, int side) {
+		if (live) {
+			Channel ch = graph.channel(channel);
+			return costs.getCosts(ch, side == 0 ? ch.getNode1() : ch.getNode2());
+		}
+		return weights[2 * channel + side];
+	}
+
+	/** Recalculates the entries of a channel after its fees or balances changed **/
+	public void update(Channel ch) {
+		if (live) return;
+		if (2 * ch.getID() + 1 >= weights.length)
+			weights = Arrays.copyOf(weights, Math.max(2 * ch.getID() + 2, 2 * weights.length));
+		set(ch);
+	}
+
+	private void set(Channel ch) {
+		weights[2 * ch.getID()] = costs.getCosts(ch, ch.getNode1());
+		weights[2 * ch.getID() + 1] = costs.getCosts(ch, ch.getNode2());
+	}
+}
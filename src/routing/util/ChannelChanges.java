@@ -0,0 +1,57 @@
+package routing.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import core.Simulation;
+import graph.Channel;
+
+/**
+ * Keeps track of the channels whose routing costs may have changed,
+ * i.e. whose fees or balances were updated, for repairing trees.
+ * @author Josua
+ */
+public class ChannelChanges {
+
+	private final Simulation sim;
+	private final int[] changedAt; // sequence number of the last change
+	private HashSet<Channel> pending;
+	private int sequence;
+
+	/** Registers for fee and channel updates **/
+	public ChannelChanges(Simulation sim) {
+		this.sim = sim;
+		this.changedAt = new int[sim.graph().channels().size()];
+		this.pending = new HashSet<>();
+		sim.feePolicy().onFeeUpdate(ch -> changed(ch));
+		sim.graph().onChannelUpdate(ch -> changed(ch));
+	}
+
+	private void changed(Channel ch) {
+		changedAt[ch.getID()] = ++sequence;
+		pending.add(ch);
+	}
+
+	/** Current sequence number, to be passed to since() later **/
+	public int now() {
+		return sequence;
+	}
+
+	/** Channels changed after the given sequence number (scans all channels) **/
+	public List<Channel> since(int seq) {
+		List<Channel> changed = new ArrayList<>();
+		if (seq == sequence) return changed;
+		for (int id = 0; id < changedAt.length; id++)
+			if (changedAt[id] > seq)
+				changed.add(sim.graph().channel(id));
+		return changed;
+	}
+
+	/** Channels changed since the last call **/
+	public HashSet<Channel> takePending() {
+		HashSet<Channel> changed = pending;
+		pending = new HashSet<>();
+		return changed;
+	}
+}
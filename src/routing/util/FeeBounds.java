@@ -0,0 +1,23 @@
+package routing.util;
+
+/**
+ * Lower bounds for the fees of routes, used by OptimalRouting as A*
+ * heuristic. The bounds must be consistent (satisfy the triangle
+ * inequality for every channel direction), so that the search finds
+ * routes with the same fees as a plain Dijkstra search.
+ * @author Josua
+ */
+public interface FeeBounds {
+
+	/** Adapts the bounds to the current fees, e.g. after a fee update sweep **/
+	void customize();
+
+	/**
+	 * Lower bound for the fees of a route from one node to another,
+	 * for a payment which transfers at least the given amount on each hop.
+	 */
+	long lowerBound(int from, int to, int amount);
+
+	/** Storage of the bounds (bits) **/
+	long estimateStorage();
+}
@@ -0,0 +1,331 @@
+package routing.util;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import graph.Channel;
+import graph.Graph;
+import graph.Topology;
+import utility.Random;
+import utility.lib.IntHashSet;
+
+/**
+ * Customizable contraction hierarchy (CCH) with a core, for fee bounds
+ * as an alternative to plain landmark tables (FeeLandmarks). Like those,
+ * it bounds the fees by the summed base fees and by the summed fee rates
+ * of a route, but exactly wherever the hierarchy reaches.
+ * <ul>
+ * <li>Preprocessing (once, metric independent): a minimum degree
+ * elimination order, which stops at the core of nodes whose degree
+ * exceeds CORE_DEGREE, and the chordal supergraph it induces, stored as
+ * upward arcs per eliminated node, with the elimination tree.</li>
+ * <li>Customization (after fee changes): the channel weights are set on
+ * the arcs and improved over all lower triangles, bottom up; the landmark
+ * tables are customized as well.</li>
+ * <li>Queries: an upward search from the source along its elimination
+ * tree path, then the bound of a node is the best of its upward distance
+ * and the bounds of its upward neighbors plus the downward arcs, computed
+ * on demand along its elimination tree path and memoised until the source
+ * changes (CCH potentials). Core nodes take the landmark bounds instead,
+ * which keeps the potentials consistent.</li>
+ * </ul>
+ * Nodes are numbered by rank internally, the core has the highest ranks.
+ * Scale-free graphs would otherwise keep a dense core during the whole
+ * elimination, with a number of arcs that grows quadratically in its size.
+ * @author Josua
+ */
+public class FeeHierarchy implements FeeBounds {
+
+	private static final int INFINITE = Integer.MAX_VALUE;
+	private static final long UNREACHABLE = Long.MAX_VALUE;
+	/** Degree above which the elimination stops **/
+	public static final int CORE_DEGREE = 32;
+
+	private final Graph graph;
+	private final int size;
+	private final FeeLandmarks landmarks;
+	private final int[] rank;
+	// first rank of the core, and its nodes by rank
+	private int core;
+	private int[] coreNodes;
+	// upward arcs of each rank (CSR), heads sorted by rank, none within the core
+	private final int[] first, head;
+	// elimination tree (lowest upward neighbor), -1 for roots and the core
+	private final int[] parent;
+	// arc of each channel, -1 for loops and channels within the core
+	private final int[] channelArc;
+	// weights of the arcs in upward (lower to higher rank) and downward direction
+	private final int[] baseUp, baseDown, rateUp, rateDown;
+
+	// query state by rank: upward distances from the source, memoised potentials
+	private final long[] upBase, upRate, potBase, potRate;
+	private final int[] upStamp, potStamp, stack, position;
+	private final long[] coreBounds = new long[2];
+	private int source = -1, sourceNode, stamp;
+
+	/**
+	 * Orders the nodes, builds the hierarchy and customizes it to the current fees
+	 * @param landmarkCount number of landmarks for the core bounds
+	 */
+	public FeeHierarchy(Graph graph, int landmarkCount, Random random) {
+		this.graph = graph;
+		this.size = graph.size();
+		landmarks = new FeeLandmarks(graph, landmarkCount, random);
+		rank = new int[size];
+		int[][] upward = eliminate();
+
+		first = new int[size + 1];
+		for (int v = 0; v < size; v++)
+			first[rank[v] + 1] = (upward[v] != null) ? upward[v].length : 0;
+		for (int r = 0; r < size; r++)
+			first[r + 1] += first[r];
+		head = new int[first[size]];
+		for (int v = 0; v < size; v++) {
+			int r = rank[v];
+			if (upward[v] == null) continue;
+			for (int k = 0; k < upward[v].length; k++)
+				head[first[r] + k] = rank[upward[v][k]];
+			Arrays.sort(head, first[r], first[r + 1]);
+		}
+		parent = new int[size];
+		for (int r = 0; r < size; r++)
+			parent[r] = (first[r] < first[r + 1]) ? head[first[r]] : -1;
+
+		channelArc = new int[graph.channels().size()];
+		for (Channel ch : graph.channels()) {
+			int r1 = rank[ch.getNode1()], r2 = rank[ch.getNode2()];
+			channelArc[ch.getID()] = (r1 == r2 || Math.min(r1, r2) >= core) ? -1 : arc(Math.min(r1, r2), Math.max(r1, r2));
+		}
+
+		int arcs = head.length;
+		baseUp = new int[arcs];
+		baseDown = new int[arcs];
+		rateUp = new int[arcs];
+		rateDown = new int[arcs];
+		upBase = new long[size];
+		upRate = new long[size];
+		potBase = new long[size];
+		potRate = new long[size];
+		upStamp = new int[size];
+		potStamp = new int[size];
+		stack = new int[size];
+		position = new int[size];
+		customize();
+	}
+
+	/** Sets the current fees on the arcs and improves them over all lower triangles **/
+	@Override
+	public void customize() {
+		landmarks.customize();
+		Arrays.fill(baseUp, INFINITE);
+		Arrays.fill(baseDown, INFINITE);
+		Arrays.fill(rateUp, INFINITE);
+		Arrays.fill(rateDown, INFINITE);
+		for (Channel ch : graph.channels()) {
+			int a = channelArc[ch.getID()];
+			if (a < 0) continue;
+			int base1 = ch.getFee(ch.getNode1(), 0), rate1 = ch.getFeeRate(ch.getNode1());
+			int base2 = ch.getFee(ch.getNode2(), 0), rate2 = ch.getFeeRate(ch.getNode2());
+			// parallel channels: the cheapest one counts
+			if (rank[ch.getNode1()] < rank[ch.getNode2()]) {
+				baseUp[a] = Math.min(baseUp[a], base1);
+				rateUp[a] = Math.min(rateUp[a], rate1);
+				baseDown[a] = Math.min(baseDown[a], base2);
+				rateDown[a] = Math.min(rateDown[a], rate2);
+			} else {
+				baseUp[a] = Math.min(baseUp[a], base2);
+				rateUp[a] = Math.min(rateUp[a], rate2);
+				baseDown[a] = Math.min(baseDown[a], base1);
+				rateDown[a] = Math.min(rateDown[a], rate1);
+			}
+		}
+		// triangle (v, x, y) with v below x below y improves the arc x-y (unless both are in the core)
+		for (int v = 0; v < core; v++) {
+			for (int i = first[v]; i < first[v + 1]; i++) {
+				int x = head[i];
+				if (x >= core) break;
+				for (int j = first[x]; j < first[x + 1]; j++)
+					position[head[j]] = j;
+				for (int k = i + 1; k < first[v + 1]; k++) {
+					int xy = position[head[k]];
+					// x -> v -> y and y -> v -> x
+					baseUp[xy] = min(baseUp[xy], baseDown[i], baseUp[k]);
+					rateUp[xy] = min(rateUp[xy], rateDown[i], rateUp[k]);
+					baseDown[xy] = min(baseDown[xy], baseDown[k], baseUp[i]);
+					rateDown[xy] = min(rateDown[xy], rateDown[k], rateUp[i]);
+				}
+			}
+		}
+		source = -1;
+	}
+
+	/**
+	 * Lower bound for the fees of a route from one node to another,
+	 * for a payment which transfers at least the given amount on each hop.
+	 */
+	@Override
+	public long lowerBound(int from, int to, int amount) {
+		int s = rank[from], v = rank[to];
+		if (s != source) {
+			sourceNode = from;
+			searchUpward(s);
+		}
+		if (potStamp[v] != stamp)
+			potential(v);
+		if (potBase[v] == UNREACHABLE) return INFINITE;
+		return Math.max(potBase[v], (long) (amount * potRate[v] * 0.001));
+	}
+
+	@Override
+	public long estimateStorage() {
+		return (long) head.length * 5 * 32 + (long) size * 4 * 32 + landmarks.estimateStorage();
+	}
+
+	/** Number of arcs of the hierarchy (including the channels) **/
+	public int getArcs() {
+		return head.length;
+	}
+
+	/** Number of nodes which were not eliminated **/
+	public int getCoreSize() {
+		return size - core;
+	}
+
+
+	// INTERNAL
+
+	/**
+	 * Eliminates the nodes by minimum degree (ties by node ID), connecting
+	 * the remaining neighbors of each node, and ranks them in that order,
+	 * until all remaining nodes have more than CORE_DEGREE neighbors. These
+	 * form the core and are ranked last, by node ID.
+	 * @return neighbors of each node when it was eliminated (higher ranks), null for the core
+	 */
+	private int[][] eliminate() {
+		Topology topology = graph.topology();
+		IntHashSet[] adjacent = new IntHashSet[size];
+		PriorityQueue<Long> queue = new PriorityQueue<>();
+		for (int n = 0; n < size; n++) {
+			adjacent[n] = new IntHashSet(topology.end(n) - topology.begin(n));
+			for (int i = topology.begin(n); i < topology.end(n); i++)
+				if (topology.neighbor(i) != n)
+					adjacent[n].add(topology.neighbor(i));
+			queue.add(entry(adjacent[n].size(), n));
+		}
+		int[][] upward = new int[size][];
+		int next = 0;
+		while (!queue.isEmpty()) {
+			long e = queue.poll();
+			int v = (int) e;
+			// outdated entry (node eliminated or degree changed)
+			if (upward[v] != null || adjacent[v].size() != (int) (e >>> 32)) continue;
+			if (adjacent[v].size() > CORE_DEGREE) break;
+			int[] neighbors = adjacent[v].toArray();
+			upward[v] = neighbors;
+			rank[v] = next++;
+			adjacent[v] = null;
+			for (int a : neighbors)
+				adjacent[a].remove(v);
+			for (int i = 0; i < neighbors.length; i++)
+				for (int j = i + 1; j < neighbors.length; j++)
+					if (adjacent[neighbors[i]].add(neighbors[j]))
+						adjacent[neighbors[j]].add(neighbors[i]);
+			for (int a : neighbors)
+				queue.add(entry(adjacent[a].size(), a));
+		}
+		core = next;
+		coreNodes = new int[size - core];
+		for (int v = 0; v < size; v++) {
+			if (upward[v] == null) {
+				coreNodes[next - core] = v;
+				rank[v] = next++;
+			}
+		}
+		return upward;
+	}
+
+	private static long entry(int degree, int node) {
+		return ((long) degree << 32) | node;
+	}
+
+	/** Index of the arc from a rank to a higher one **/
+	private int arc(int lower, int higher) {
+		return Arrays.binarySearch(head, first[lower], first[lower + 1], higher);
+	}
+
+	/** Upward distances from the source to all its elimination tree ancestors **/
+	private void searchUpward(int s) {
+		if (++stamp == Integer.MAX_VALUE) {
+			Arrays.fill(upStamp, 0);
+			Arrays.fill(potStamp, 0);
+			stamp = 1;
+		}
+		source = s;
+		upStamp[s] = stamp;
+		upBase[s] = upRate[s] = 0;
+		// the heads of all arcs are ancestors, i.e. later on the path, or in the core
+		for (int x = s; x >= 0; x = parent[x]) {
+			for (int i = first[x]; i < first[x + 1]; i++) {
+				int y = head[i];
+				if (upStamp[y] != stamp) {
+					upStamp[y] = stamp;
+					upBase[y] = upRate[y] = UNREACHABLE;
+				}
+				upBase[y] = Math.min(upBase[y], add(upBase[x], baseUp[i]));
+				upRate[y] = Math.min(upRate[y], add(upRate[x], rateUp[i]));
+			}
+		}
+	}
+
+	/** Bound from the source, via the (memoised) upward neighbors **/
+	private void potential(int v) {
+		int top = 0;
+		for (int x = v; x >= 0 && potStamp[x] != stamp; x = parent[x])
+			stack[top++] = x;
+		// highest first, the upward neighbors of a node are done before it
+		while (top > 0) {
+			int x = stack[--top];
+			if (x >= core) {
+				corePotential(x);
+				continue;
+			}
+			long base = (upStamp[x] == stamp) ? upBase[x] : UNREACHABLE;
+			long rate = (upStamp[x] == stamp) ? upRate[x] : UNREACHABLE;
+			for (int i = first[x]; i < first[x + 1]; i++) {
+				int y = head[i];
+				// core neighbors need not be on the elimination tree path
+				if (potStamp[y] != stamp)
+					corePotential(y);
+				base = Math.min(base, add(potBase[y], baseDown[i]));
+				rate = Math.min(rate, add(potRate[y], rateDown[i]));
+			}
+			potBase[x] = base;
+			potRate[x] = rate;
+			potStamp[x] = stamp;
+		}
+	}
+
+	/** Bound of a core node: the landmark bound, or its upward distance if that is smaller **/
+	private void corePotential(int c) {
+		int node = coreNodes[c - core];
+		landmarks.bounds(sourceNode, node, coreBounds);
+		long base = coreBounds[0], rate = coreBounds[1];
+		if (upStamp[c] == stamp) {
+			base = Math.min(base, upBase[c]);
+			rate = Math.min(rate, upRate[c]);
+		}
+		potBase[c] = base;
+		potRate[c] = rate;
+		potStamp[c] = stamp;
+	}
+
+	private static long add(long distance, int weight) {
+		return (distance == UNREACHABLE || weight == INFINITE) ? UNREACHABLE : distance + weight;
+	}
+
+	/** Weight of a path over two arcs, if it is smaller than the given one **/
+	private static int min(int weight, int weight1, int weight2) {
+		if (weight1 == INFINITE || weight2 == INFINITE) return weight;
+		return (int) Math.min(weight, Math.min((long) weight1 + weight2, INFINITE));
+	}
+}
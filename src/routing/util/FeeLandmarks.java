@@ -0,0 +1,255 @@
+package routing.util;
+
+import java.util.Arrays;
+
+import graph.Channel;
+import graph.Graph;
+import graph.Topology;
+import utility.Random;
+
+/**
+ * Landmark distance tables for A* searches with the ALT heuristic
+ * (A*, landmarks, triangle inequality) on fee weighted graphs.
+ * Since a fee is at least base/1000 and at least amount * rate/1000,
+ * there are tables for summed base fees and for summed fee rates; both
+ * give lower bounds for the fees of any payment of at least that amount.
+ * <p>
+ * Like a customizable hierarchy, the engine has a metric independent part
+ * (the landmark selection, done once) and a customization step after fee
+ * changes. The bounds only need the tables to be feasible potentials, so
+ * customization repairs the entries affected by decreased fees, keeps them
+ * for increased fees and only recomputes everything once too many channel
+ * directions have become more expensive than the tables assume.
+ * @author Josua
+ */
+public class FeeLandmarks implements FeeBounds {
+
+	private static final int INFINITE = Integer.MAX_VALUE;
+	private static final int BASE_FROM = 0, BASE_TO = 1, RATE_FROM = 2, RATE_TO = 3, TABLES = 4;
+	private static final double STALE_LIMIT = 0.1;
+
+	private final Graph graph;
+	private final int[] landmarks;
+	// [node][landmark][table], distances from and to the landmarks
+	private final int[] table;
+	// [channel][side][base/rate], weights the tables are valid for
+	private int[] weights;
+	private final IndexedHeap heap;
+	private final long[] distance, bounds = new long[2];
+	private int recomputations, repairs;
+
+	/** Selects landmarks (farthest-first) and computes their tables **/
+	public FeeLandmarks(Graph graph, int count, Random random) {
+		this.graph = graph;
+		int size = graph.size();
+		count = Math.min(count, size);
+		landmarks = new int[count];
+		table = new int[size * count * TABLES];
+		heap = new IndexedHeap(size);
+		distance = new long[size];
+		weights = currentWeights();
+
+		// next landmark is the node farthest from all previous ones
+		int[] closest = new int[size];
+		Arrays.fill(closest, INFINITE);
+		boolean[] chosen = new boolean[size];
+		int next = random.getInt(size);
+		for (int l = 0; l < count; l++) {
+			landmarks[l] = next;
+			chosen[next] = true;
+			compute(l);
+			for (int n = 0; n < size; n++)
+				closest[n] = Math.min(closest[n], table[index(n, l, BASE_FROM)]);
+			// farthest reachable node, any other node if none is left
+			next = -1;
+			for (int n = 0; n < size; n++)
+				if (!chosen[n] && (next < 0 || closest[next] == INFINITE
+						|| (closest[n] != INFINITE && closest[n] > closest[next])))
+					next = n;
+		}
+	}
+
+	/** Recomputes all tables **/
+	public void update() {
+		weights = currentWeights();
+		for (int l = 0; l < landmarks.length; l++)
+			compute(l);
+		recomputations++;
+	}
+
+	/**
+	 * Adapts the tables to the current fees, e.g. after a fee update sweep.
+	 * Entries only change where fees have decreased, unless too many
+	 * channel directions became more expensive (loose bounds).
+	 */
+	@Override
+	public void customize() {
+		int[] current = currentWeights();
+		int[] decreased = new int[current.length];
+		int count = 0, stale = 0;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i] < weights[i]) {
+				decreased[count++] = i;
+				weights[i] = current[i];
+			} else if (current[i] > weights[i]) {
+				stale++;
+			}
+		}
+		if (stale > STALE_LIMIT * current.length) {
+			update();
+		} else if (count > 0) {
+			for (int l = 0; l < landmarks.length; l++)
+				for (int t = 0; t < TABLES; t++)
+					repair(l, t, decreased, count);
+			repairs++;
+		}
+	}
+
+	/**
+	 * Lower bound for the fees of a route from one node to another,
+	 * for a payment which transfers at least the given amount on each hop.
+	 */
+	@Override
+	public long lowerBound(int from, int to, int amount) {
+		bounds(from, to, bounds);
+		return Math.max(bounds[0], (long) (amount * bounds[1] * 0.001));
+	}
+
+	/**
+	 * Lower bounds for the summed base fees and for the summed fee rates
+	 * of a route from one node to another (see lowerBound)
+	 * @param bounds receives both bounds
+	 */
+	void bounds(int from, int to, long[] bounds) {
+		long base = 0, rate = 0;
+		int f = index(from, 0, 0), t = index(to, 0, 0);
+		for (int l = 0; l < landmarks.length; l++, f += TABLES, t += TABLES) {
+			base = Math.max(base, bound(table[f + BASE_FROM], table[t + BASE_FROM],
+					table[f + BASE_TO], table[t + BASE_TO]));
+			rate = Math.max(rate, bound(table[f + RATE_FROM], table[t + RATE_FROM],
+					table[f + RATE_TO], table[t + RATE_TO]));
+		}
+		bounds[0] = base;
+		bounds[1] = rate;
+	}
+
+	@Override
+	public long estimateStorage() {
+		return (long) table.length * 32;
+	}
+
+	public int[] getLandmarks() {
+		return landmarks;
+	}
+
+	/** Number of full table computations after construction **/
+	public int getRecomputations() {
+		return recomputations;
+	}
+
+	/** Number of customizations which only repaired the tables **/
+	public int getRepairs() {
+		return repairs;
+	}
+
+	/** Triangle inequality bound for d(from, to) from one landmark L **/
+	private static long bound(int fromL, int toL, int fromTo, int toTo) {
+		long bound = 0;
+		// d(from, to) >= d(from, L) - d(to, L)
+		if (fromTo != INFINITE && toTo != INFINITE)
+			bound = Math.max(bound, (long) fromTo - toTo);
+		// d(from, to) >= d(L, to) - d(L, from)
+		if (toL != INFINITE && fromL != INFINITE)
+			bound = Math.max(bound, (long) toL - fromL);
+		return bound;
+	}
+
+	private int index(int node, int l, int t) {
+		return (node * landmarks.length + l) * TABLES + t;
+	}
+
+	/** Base fee (at amount 0) and fee rate of all channel directions **/
+	private int[] currentWeights() {
+		int[] w = new int[graph.channels().size() * 4];
+		for (Channel ch : graph.channels()) {
+			int i = ch.getID() * 4;
+			w[i] = ch.getFee(ch.getNode1(), 0);
+			w[i + 1] = ch.getFeeRate(ch.getNode1());
+			w[i + 2] = ch.getFee(ch.getNode2(), 0);
+			w[i + 3] = ch.getFeeRate(ch.getNode2());
+		}
+		return w;
+	}
+
+	/** Weight of a channel direction for a table, as the tables assume **/
+	private int weight(Channel ch, int sender, int t) {
+		int i = ch.getID() * 4 + ((sender == ch.getNode1()) ? 0 : 2);
+		return weights[(t == BASE_FROM || t == BASE_TO) ? i : i + 1];
+	}
+
+	private static boolean outgoing(int t) {
+		return t == BASE_FROM || t == RATE_FROM;
+	}
+
+	private void compute(int l) {
+		for (int t = 0; t < TABLES; t++) {
+			Arrays.fill(distance, Long.MAX_VALUE);
+			distance[landmarks[l]] = 0;
+			heap.clear();
+			heap.push(landmarks[l], 0);
+			search(t);
+			for (int n = 0; n < distance.length; n++)
+				table[index(n, l, t)] = (int) Math.min(distance[n], INFINITE);
+		}
+	}
+
+	/**
+	 * Lowers the entries of one table until it is a feasible potential for
+	 * the decreased channel directions again (d(v) <= d(u) + w(u, v)).
+	 */
+	private void repair(int l, int t, int[] decreased, int count) {
+		for (int n = 0; n < distance.length; n++) {
+			int d = table[index(n, l, t)];
+			distance[n] = (d == INFINITE) ? Long.MAX_VALUE : d;
+		}
+		heap.clear();
+		for (int k = 0; k < count; k++) {
+			int i = decreased[k];
+			Channel ch = graph.channel(i / 4);
+			int sender = (i % 4 < 2) ? ch.getNode1() : ch.getNode2();
+			int receiver = ch.getOtherNode(sender);
+			// outgoing tables relax the receiver, incoming ones the sender
+			int n1 = outgoing(t) ? sender : receiver;
+			int n2 = outgoing(t) ? receiver : sender;
+			if (distance[n1] == Long.MAX_VALUE) continue;
+			long dist = distance[n1] + weight(ch, sender, t);
+			if (dist < distance[n2]) {
+				distance[n2] = dist;
+				heap.push(n2, dist);
+			}
+		}
+		if (heap.isEmpty()) return;
+		search(t);
+		for (int n = 0; n < distance.length; n++)
+			table[index(n, l, t)] = (int) Math.min(distance[n], INFINITE);
+	}
+
+	/** Dijkstra from (outgoing) or to a landmark, continuing the queued nodes **/
+	private void search(int t) {
+		Topology topology = graph.topology();
+		boolean outgoing = outgoing(t);
+		while (!heap.isEmpty()) {
+			int n1 = heap.poll();
+			for (int i = topology.begin(n1); i < topology.end(n1); i++) {
+				int n2 = topology.neighbor(i);
+				Channel ch = graph.channel(topology.channel(i));
+				// fee is paid by the sending node of the channel direction
+				long dist = distance[n1] + weight(ch, outgoing ? n1 : n2, t);
+				if (dist < distance[n2]) {
+					distance[n2] = dist;
+					heap.push(n2, dist);
+				}
+			}
+		}
+	}
+}
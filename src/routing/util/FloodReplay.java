@@ -0,0 +1,138 @@
+package routing.util;
+
+import core.Simulation;
+import core.event.Message;
+import graph.Node;
+import graph.Topology;
+import routing.costs.WeightTable;
+
+/**
+ * Central replay of the TreeUpdate flooding of the spanning tree/forest
+ * generators, without events. Since all messages have the same propagation
+ * delay, the messages arrive in the order they were sent, so a FIFO queue
+ * on primitive arrays reproduces the converged tree exactly, along with
+ * the number of messages and the time each node received its final update.
+ * Routing costs are taken at the start of the flooding.
+ * @author Josua
+ */
+final class FloodReplay {
+
+	private final Simulation sim;
+	private final WeightTable weights;
+	private final long[] distance;
+	private final int[] parent, partition;
+	private final float[] convergence;
+	private long messages;
+
+	// ring buffer of messages in flight, with the distance of the receiver via the sender
+	private int[] receiver, sender, partSender, round;
+	private long[] distReceiver;
+	private int head, count;
+
+	/** @param partition may be null if the roots need not be tracked **/
+	FloodReplay(Simulation sim, WeightTable weights, long[] distance, int[] parent, int[] partition) {
+		this.sim = sim;
+		this.weights = weights;
+		this.distance = distance;
+		this.parent = parent;
+		this.partition = partition;
+		this.convergence = new float[distance.length];
+		allocate(1024);
+	}
+
+	/** Floods from the roots until no node improves anymore **/
+	void run(int[] roots) {
+		Topology topology = sim.graph().topology();
+		for (int root : roots)
+			enqueue(root, -1, 0, root, 1);
+		while (count > 0) {
+			int node = receiver[head], from = sender[head];
+			int part = partSender[head], r = round[head];
+			long dist = distReceiver[head];
+			head = (head + 1) % receiver.length;
+			count--;
+			messages++;
+
+			boolean propagate = false;
+			if (from < 0) {
+				// root node special case
+				distance[node] = 0;
+				if (partition != null) partition[node] = node;
+				convergence[node] = r * Message.STANDARD_PROPAGATION_DELAY;
+				propagate = true;
+			} else {
+				if (dist < distance[node]) {
+					parent[node] = from;
+					distance[node] = dist;
+					if (partition != null) partition[node] = part;
+					convergence[node] = r * Message.STANDARD_PROPAGATION_DELAY;
+					propagate = true;
+				}
+			}
+			// consumers are always leaves
+			if (sim.graph().node(node).hasRole(Node.ROLE_CONSUMER))
+				propagate = false;
+			if (propagate) {
+				for (int i = topology.begin(node); i < topology.end(node); i++) {
+					if (topology.neighbor(i) == from) continue;
+					enqueue(topology.neighbor(i), node, distance[node] + TreeWeights.toNeighbor(weights, topology, i),
+						(partition != null) ? partition[node] : -1, r + 1);
+				}
+			}
+		}
+	}
+
+	/** Number of messages the flooding needed **/
+	long getMessages() {
+		return messages;
+	}
+
+	/** Time after the start at which each node got its final update (0 if never reached) **/
+	float[] getConvergenceTimes() {
+		return convergence;
+	}
+
+	/** Time after the start at which the last node got its final update **/
+	float getConvergenceTime() {
+		float max = 0;
+		for (float time : convergence)
+			max = Math.max(max, time);
+		return max;
+	}
+
+	private void enqueue(int to, int from, long dist, int part, int r) {
+		if (count == receiver.length)
+			grow();
+		int i = (head + count) % receiver.length;
+		receiver[i] = to;
+		sender[i] = from;
+		distReceiver[i] = dist;
+		partSender[i] = part;
+		round[i] = r;
+		count++;
+	}
+
+	private void grow() {
+		int[] oldReceiver = receiver, oldSender = sender;
+		int[] oldPart = partSender, oldRound = round;
+		long[] oldDist = distReceiver;
+		allocate(2 * oldReceiver.length);
+		for (int k = 0; k < count; k++) {
+			int i = (head + k) % oldReceiver.length;
+			receiver[k] = oldReceiver[i];
+			sender[k] = oldSender[i];
+			partSender[k] = oldPart[i];
+			round[k] = oldRound[i];
+			distReceiver[k] = oldDist[i];
+		}
+		head = 0;
+	}
+
+	private void allocate(int capacity) {
+		receiver = new int[capacity];
+		sender = new int[capacity];
+		partSender = new int[capacity];
+		round = new int[capacity];
+		distReceiver = new long[capacity];
+	}
+}
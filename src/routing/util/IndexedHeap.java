@@ -0,0 +1,108 @@
+package routing.util;
+
+import java.util.Arrays;
+
+/**
+ * Indexed d-ary min-heap of node IDs with long keys, for Dijkstra searches.
+ * Each node is queued at most once; pushing a queued node with a smaller
+ * key is a decrease-key operation. Works on primitive arrays only.
+ * @author Josua
+ */
+public class IndexedHeap {
+
+	private final int arity;
+	private final int[] heap, position;
+	private final long[] key;
+	private int size;
+
+	/** Creates a 4-ary heap for node IDs below the given size **/
+	public IndexedHeap(int nodes) {
+		this(nodes, 4);
+	}
+
+	public IndexedHeap(int nodes, int arity) {
+		this.arity = arity;
+		heap = new int[nodes];
+		position = new int[nodes];
+		key = new long[nodes];
+		Arrays.fill(position, -1);
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(int node) {
+		return position[node] >= 0;
+	}
+
+	/** Key of a queued node **/
+	public long key(int node) {
+		return key[node];
+	}
+
+	/** Queues a node, or lowers its key if it is queued with a larger one **/
+	public void push(int node, long nodeKey) {
+		int i = position[node];
+		if (i < 0) {
+			i = size++;
+		} else if (nodeKey >= key[node]) {
+			return;
+		}
+		key[node] = nodeKey;
+		siftUp(node, i);
+	}
+
+	/** Removes and returns the node with the smallest key **/
+	public int poll() {
+		int top = heap[0];
+		position[top] = -1;
+		int last = heap[--size];
+		if (size > 0)
+			siftDown(last, 0);
+		return top;
+	}
+
+	/** Removes all queued nodes (O(size)) **/
+	public void clear() {
+		for (int i = 0; i < size; i++)
+			position[heap[i]] = -1;
+		size = 0;
+	}
+
+	private void siftUp(int node, int i) {
+		long k = key[node];
+		while (i > 0) {
+			int parent = (i - 1) / arity;
+			if (key[heap[parent]] <= k) break;
+			place(heap[parent], i);
+			i = parent;
+		}
+		place(node, i);
+	}
+
+	private void siftDown(int node, int i) {
+		long k = key[node];
+		while (true) {
+			int first = i * arity + 1;
+			if (first >= size) break;
+			int min = first;
+			for (int c = first + 1; c < Math.min(first + arity, size); c++)
+				if (key[heap[c]] < key[heap[min]])
+					min = c;
+			if (key[heap[min]] >= k) break;
+			place(heap[min], i);
+			i = min;
+		}
+		place(node, i);
+	}
+
+	private void place(int node, int i) {
+		heap[i] = node;
+		position[node] = i;
+	}
+}
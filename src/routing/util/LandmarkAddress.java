@@ -0,0 +1,79 @@
+package routing.util;
+
+/**
+ * Hierarchical landmark addresses packed into a long. The lowest bits hold
+ * the number of digits, followed by the digits (child slots) from the top
+ * of the hierarchy downwards, so prefixes are simple bit masks and an
+ * address never needs to be allocated.
+ * @author Josua
+ */
+public final class LandmarkAddress {
+
+	/** No address (yet) **/
+	public static final long NONE = -1;
+	/** Address of zero length, the common prefix of all addresses **/
+	public static final long EMPTY = 0;
+
+	private static final int LENGTH_BITS = 5, DIGIT_BITS = 3;
+	/** Number of different digits, i.e. children per landmark **/
+	public static final int RADIX = 1 << DIGIT_BITS;
+	public static final int MAX_LENGTH = (Long.SIZE - 1 - LENGTH_BITS) / DIGIT_BITS;
+
+	private LandmarkAddress() {}
+
+	/** Address of a child in the given slot (NONE is treated as EMPTY) **/
+	public static long child(long address, int digit) {
+		if (address == NONE) address = EMPTY;
+		int length = length(address);
+		if (digit < 0 || digit >= RADIX)
+			throw new IllegalArgumentException("Invalid address digit " + digit);
+		if (length >= MAX_LENGTH)
+			throw new IllegalStateException("Landmark hierarchy deeper than " + MAX_LENGTH);
+		return (address & ~lengthMask())
+			| ((long) digit << (LENGTH_BITS + length * DIGIT_BITS)) | (length + 1);
+	}
+
+	/** Number of digits **/
+	public static int length(long address) {
+		return (int) (address & lengthMask());
+	}
+
+	/** Digit at the given position (0 is the top of the hierarchy) **/
+	public static int digit(long address, int position) {
+		return (int) (address >>> (LENGTH_BITS + position * DIGIT_BITS)) & (RADIX - 1);
+	}
+
+	/** The first digits of an address **/
+	public static long prefix(long address, int length) {
+		long digits = (address >>> LENGTH_BITS) & ((1L << (length * DIGIT_BITS)) - 1);
+		return (digits << LENGTH_BITS) | length;
+	}
+
+	/** Whether an address starts with a prefix (NONE has no prefixes) **/
+	public static boolean isPrefix(long prefix, long address) {
+		if (prefix == NONE || address == NONE) return false;
+		int length = length(prefix);
+		return length <= length(address) && prefix(address, length) == prefix;
+	}
+
+	/** Length of the longest common prefix of two addresses **/
+	public static int commonLength(long address1, long address2) {
+		int length = Math.min(length(address1), length(address2));
+		long diff = (address1 ^ address2) >>> LENGTH_BITS;
+		if (diff == 0) return length;
+		return Math.min(length, Long.numberOfTrailingZeros(diff) / DIGIT_BITS);
+	}
+
+	/** Hex digits, as in the string addresses used before **/
+	public static String toString(long address) {
+		if (address == NONE) return "null";
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < length(address); i++)
+			s.append(Integer.toHexString(digit(address, i)));
+		return s.toString();
+	}
+
+	private static long lengthMask() {
+		return (1L << LENGTH_BITS) - 1;
+	}
+}
@@ -0,0 +1,219 @@
+package routing.util;
+
+import java.util.Arrays;
+
+/**
+ * Routing table from packed landmark addresses (see LandmarkAddress) to
+ * non-negative int values, with longest prefix matching. Implemented as a
+ * path-compressed radix tree (patricia trie) on primitive arrays: every
+ * node stores its full prefix, children are kept as sibling lists, and
+ * nodes without value and with less than two children are removed, so
+ * there are fewer than two nodes per entry.
+ * @author Josua
+ */
+public class PrefixTable {
+
+	private static final int ROOT = 0, NONE = -1;
+
+	private long[] key;
+	private int[] value, firstChild, nextSibling;
+	private int nodes, free, size;
+
+	public PrefixTable() {
+		this(4);
+	}
+
+	public PrefixTable(int capacity) {
+		allocate(Math.max(capacity, 2));
+		nodes = 1;
+		free = NONE;
+		key[ROOT] = LandmarkAddress.EMPTY;
+		value[ROOT] = NONE;
+		firstChild[ROOT] = nextSibling[ROOT] = NONE;
+	}
+
+	/** Number of addresses with a value **/
+	public int size() {
+		return size;
+	}
+
+	/** Value of an address, -1 if none **/
+	public int get(long address) {
+		int node = find(address);
+		return (node >= 0 && key[node] == address) ? value[node] : NONE;
+	}
+
+	/** Value of the longest prefix of an address which has one, -1 if none **/
+	public int getLongestPrefix(long address) {
+		if (address == LandmarkAddress.NONE) return NONE;
+		int result = value[ROOT];
+		int node = ROOT;
+		while (true) {
+			int child = childTowards(node, address);
+			if (child < 0 || !LandmarkAddress.isPrefix(key[child], address)) return result;
+			node = child;
+			if (value[node] >= 0) result = value[node];
+		}
+	}
+
+	/** Sets the value of an address **/
+	public void put(long address, int v) {
+		if (address == LandmarkAddress.NONE || v < 0)
+			throw new IllegalArgumentException("Invalid prefix table entry");
+		int node = ROOT;
+		while (key[node] != address) {
+			int child = childTowards(node, address);
+			if (child < 0) {
+				// new leaf
+				node = addChild(node, newNode(address));
+				break;
+			}
+			if (!LandmarkAddress.isPrefix(key[child], address)) {
+				// split the edge to the child at the common prefix
+				long common = LandmarkAddress.prefix(address,
+					LandmarkAddress.commonLength(address, key[child]));
+				int split = newNode(common);
+				replaceChild(node, child, split);
+				addChild(split, child);
+				node = (common == address) ? split : addChild(split, newNode(address));
+				break;
+			}
+			node = child;
+		}
+		if (value[node] < 0) size++;
+		value[node] = v;
+	}
+
+	/** Removes the value of an address **/
+	public void remove(long address) {
+		if (address == LandmarkAddress.NONE) return;
+		int parent = NONE, node = ROOT;
+		while (key[node] != address) {
+			int child = childTowards(node, address);
+			if (child < 0 || !LandmarkAddress.isPrefix(key[child], address)) return;
+			parent = node;
+			node = child;
+		}
+		if (value[node] < 0) return;
+		value[node] = NONE;
+		size--;
+		if (node == ROOT) return;
+		// remove nodes which are neither entries nor branches
+		if (firstChild[node] < 0) {
+			removeChild(parent, node);
+			release(node);
+			if (parent != ROOT && value[parent] < 0 && nextSibling[firstChild[parent]] < 0)
+				contract(parent);
+		} else if (nextSibling[firstChild[node]] < 0) {
+			contract(node);
+		}
+	}
+
+	/** Removes all entries **/
+	public void clear() {
+		nodes = 1;
+		free = NONE;
+		size = 0;
+		value[ROOT] = NONE;
+		firstChild[ROOT] = NONE;
+	}
+
+	/** The node of the longest stored prefix of an address **/
+	private int find(long address) {
+		if (address == LandmarkAddress.NONE) return NONE;
+		int node = ROOT;
+		while (key[node] != address) {
+			int child = childTowards(node, address);
+			if (child < 0 || !LandmarkAddress.isPrefix(key[child], address)) break;
+			node = child;
+		}
+		return node;
+	}
+
+	/** Child of a node whose prefix continues with the same digit as the address **/
+	private int childTowards(int node, long address) {
+		int length = LandmarkAddress.length(key[node]);
+		if (length >= LandmarkAddress.length(address)) return NONE;
+		int digit = LandmarkAddress.digit(address, length);
+		for (int c = firstChild[node]; c >= 0; c = nextSibling[c])
+			if (LandmarkAddress.digit(key[c], length) == digit) return c;
+		return NONE;
+	}
+
+	/** Replaces a node having a single child by that child **/
+	private void contract(int node) {
+		int child = firstChild[node];
+		int parent = parentOf(node);
+		replaceChild(parent, node, child);
+		release(node);
+	}
+
+	private int parentOf(int node) {
+		int parent = ROOT;
+		while (true) {
+			int child = childTowards(parent, key[node]);
+			if (child == node) return parent;
+			parent = child;
+		}
+	}
+
+	private int addChild(int parent, int child) {
+		nextSibling[child] = firstChild[parent];
+		firstChild[parent] = child;
+		return child;
+	}
+
+	private void removeChild(int parent, int child) {
+		if (firstChild[parent] == child) {
+			firstChild[parent] = nextSibling[child];
+			return;
+		}
+		for (int c = firstChild[parent]; c >= 0; c = nextSibling[c]) {
+			if (nextSibling[c] == child) {
+				nextSibling[c] = nextSibling[child];
+				return;
+			}
+		}
+	}
+
+	private void replaceChild(int parent, int child, int replacement) {
+		removeChild(parent, child);
+		addChild(parent, replacement);
+	}
+
+	private int newNode(long address) {
+		int node;
+		if (free >= 0) {
+			node = free;
+			free = nextSibling[node];
+		} else {
+			if (nodes == key.length)
+				grow();
+			node = nodes++;
+		}
+		key[node] = address;
+		value[node] = NONE;
+		firstChild[node] = nextSibling[node] = NONE;
+		return node;
+	}
+
+	private void release(int node) {
+		nextSibling[node] = free;
+		free = node;
+	}
+
+	private void grow() {
+		int capacity = 2 * key.length;
+		key = Arrays.copyOf(key, capacity);
+		value = Arrays.copyOf(value, capacity);
+		firstChild = Arrays.copyOf(firstChild, capacity);
+		nextSibling = Arrays.copyOf(nextSibling, capacity);
+	}
+
+	private void allocate(int capacity) {
+		key = new long[capacity];
+		value = new int[capacity];
+		firstChild = new int[capacity];
+		nextSibling = new int[capacity];
+	}
+}
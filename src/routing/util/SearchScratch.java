@@ -0,0 +1,70 @@
+package routing.util;
+
+import java.util.Arrays;
+
+/**
+ * Per-node scratch data for repeated graph searches (distance, amount,
+ * predecessor, visited flag). Entries are stamped with the epoch of the
+ * search that wrote them, so reset() is O(1) and a search only pays for
+ * the nodes it actually reaches.
+ * @author Josua
+ */
+public class SearchScratch {
+
+	private final int[] reached, visited; // epoch stamps
+	private final long[] distance;
+	private final int[] amount, prev;
+	private int epoch;
+
+	public SearchScratch(int nodes) {
+		reached = new int[nodes];
+		visited = new int[nodes];
+		distance = new long[nodes];
+		amount = new int[nodes];
+		prev = new int[nodes];
+	}
+
+	/** Starts a new search, forgetting all entries of the previous one **/
+	public void reset() {
+		if (++epoch == Integer.MAX_VALUE) {
+			Arrays.fill(reached, 0);
+			Arrays.fill(visited, 0);
+			epoch = 1;
+		}
+	}
+
+	/** Records a (better) way to reach a node **/
+	public void reach(int node, long dist, int amt, int prevNode) {
+		reached[node] = epoch;
+		distance[node] = dist;
+		amount[node] = amt;
+		prev[node] = prevNode;
+	}
+
+	public boolean isReached(int node) {
+		return reached[node] == epoch;
+	}
+
+	/** Distance of a node, Long.MAX_VALUE if not reached **/
+	public long distance(int node) {
+		return (reached[node] == epoch) ? distance[node] : Long.MAX_VALUE;
+	}
+
+	/** Amount at a node, -1 if not reached **/
+	public int amount(int node) {
+		return (reached[node] == epoch) ? amount[node] : -1;
+	}
+
+	/** Predecessor of a node, -1 if not reached or a start node **/
+	public int prev(int node) {
+		return (reached[node] == epoch) ? prev[node] : -1;
+	}
+
+	public void visit(int node) {
+		visited[node] = epoch;
+	}
+
+	public boolean isVisited(int node) {
+		return visited[node] == epoch;
+	}
+}
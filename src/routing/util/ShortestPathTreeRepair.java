@@ -0,0 +1,203 @@
+package routing.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import core.Simulation;
+import graph.Channel;
+import graph.Node;
+import graph.Topology;
+import routing.costs.WeightTable;
+
+/**
+ * Dynamic repair of a shortest path tree/forest (Ramalingam-Reps style),
+ * as created by the spanning tree/forest generators, after the routing
+ * costs of some channels changed. The edges weigh as in the generators
+ * (TreeWeights), so the distances they computed fit the repair, and
+ * consumers are leaves.
+ * <ul>
+ * <li>If a tree edge got more expensive, the subtree below it is detached,
+ * and its nodes are reattached via their cheapest unaffected neighbors.</li>
+ * <li>If an edge got cheaper, the improvement is propagated from it.</li>
+ * </ul>
+ * Both steps are Dijkstra searches restricted to the affected nodes, so the
+ * work is proportional to the affected subtrees and their neighborhoods.
+ * @author Josua
+ */
+public class ShortestPathTreeRepair {
+
+	private static final long INFINITE = Integer.MAX_VALUE;
+
+	private final Simulation sim;
+	private final WeightTable weights;
+	private final int[] parent, partition;
+	private final long[] distance;
+	// children as intrusive doubly linked lists
+	private final int[] firstChild, nextSibling, prevSibling;
+	private final int[] affected; // stamps
+	private final int[] stack;
+	private final IndexedHeap heap;
+	private final SpanningForest tree;
+	private int stamp;
+
+	/**
+	 * Repairs the given arrays in place
+	 * @param distance distances from the roots when the tree was created
+	 * @param partition root of each node's tree, may be null
+	 */
+	public ShortestPathTreeRepair(Simulation sim, WeightTable weights,
+			int[] parent, long[] distance, int[] partition) {
+		this.sim = sim;
+		this.weights = weights;
+		this.parent = parent;
+		this.distance = distance;
+		this.partition = partition;
+		int size = parent.length;
+		firstChild = new int[size];
+		nextSibling = new int[size];
+		prevSibling = new int[size];
+		affected = new int[size];
+		stack = new int[size];
+		heap = new IndexedHeap(size);
+		Arrays.fill(firstChild, -1);
+		for (int n = 0; n < size; n++)
+			link(n);
+		tree = new SpanningForest(parent);
+	}
+
+	/**
+	 * Adapts the tree to the current routing costs of the changed channels
+	 * @return number of node updates (0 if the tree did not change)
+	 */
+	public int repair(Collection<Channel> changed) {
+		if (++stamp == Integer.MAX_VALUE) {
+			Arrays.fill(affected, 0);
+			stamp = 1;
+		}
+		heap.clear();
+		int updated = 0;
+
+		// detach subtrees below tree edges which got more expensive
+		int count = 0;
+		for (Channel ch : changed) {
+			count = detach(ch.getNode1(), ch.getNode2(), count);
+			count = detach(ch.getNode2(), ch.getNode1(), count);
+		}
+		// reattach them via their best unaffected neighbors
+		Topology topology = sim.graph().topology();
+		for (int k = 0; k < count; k++) {
+			int n = stack[k];
+			long best = INFINITE;
+			int bestParent = -1;
+			for (int i = topology.begin(n); i < topology.end(n); i++) {
+				int p = topology.neighbor(i);
+				if (affected[p] == stamp || !relays(p)) continue;
+				long dist = distance[p] + TreeWeights.fromNeighbor(weights, topology, i);
+				if (dist < best) {
+					best = dist;
+					bestParent = p;
+				}
+			}
+			setParent(n, bestParent, best);
+			if (bestParent >= 0)
+				heap.push(n, best);
+		}
+		updated += count;
+
+		// edges which got cheaper
+		for (Channel ch : changed) {
+			updated += relax(ch.getNode1(), ch.getNode2(), weight(ch.getNode1(), ch.getNode2()));
+			updated += relax(ch.getNode2(), ch.getNode1(), weight(ch.getNode2(), ch.getNode1()));
+		}
+
+		// propagate the new distances
+		while (!heap.isEmpty()) {
+			int n = heap.poll();
+			if (!relays(n)) continue;
+			for (int i = topology.begin(n); i < topology.end(n); i++)
+				updated += relax(n, topology.neighbor(i), TreeWeights.toNeighbor(weights, topology, i));
+		}
+		if (updated > 0)
+			tree.index();
+		return updated;
+	}
+
+	/** The repaired tree, a view of the parents which each repair re-indexes **/
+	public SpanningForest getTree() {
+		return tree;
+	}
+
+	public long[] getDistances() {
+		return distance;
+	}
+
+	/** Marks the subtree below an edge as affected if the edge got more expensive **/
+	private int detach(int p, int n, int count) {
+		if (parent[n] != p || affected[n] == stamp
+			|| distance[p] + weight(p, n) <= distance[n]) return count;
+		int top = count;
+		stack[count++] = n;
+		affected[n] = stamp;
+		while (top < count) {
+			int node = stack[top++];
+			distance[node] = INFINITE;
+			for (int c = firstChild[node]; c >= 0; c = nextSibling[c]) {
+				if (affected[c] != stamp) {
+					affected[c] = stamp;
+					stack[count++] = c;
+				}
+			}
+		}
+		return count;
+	}
+
+	/** Relaxes the edge from p to n with the given weight, queues n if it improved **/
+	private int relax(int p, int n, long weight) {
+		if (!relays(p) || distance[p] >= INFINITE) return 0;
+		long dist = distance[p] + weight;
+		if (dist >= distance[n]) return 0;
+		setParent(n, p, dist);
+		heap.push(n, dist);
+		return 1;
+	}
+
+	private long weight(int p, int n) {
+		return TreeWeights.between(weights, sim.graph(), p, n);
+	}
+
+	/** Consumers are always leaves **/
+	private boolean relays(int node) {
+		return !sim.graph().node(node).hasRole(Node.ROLE_CONSUMER);
+	}
+
+	private void setParent(int n, int p, long dist) {
+		unlink(n);
+		parent[n] = p;
+		distance[n] = dist;
+		if (partition != null)
+			partition[n] = (p >= 0) ? partition[p] : -1;
+		link(n);
+	}
+
+	private void link(int n) {
+		int p = parent[n];
+		prevSibling[n] = -1;
+		nextSibling[n] = -1;
+		if (p < 0) return;
+		nextSibling[n] = firstChild[p];
+		if (firstChild[p] >= 0)
+			prevSibling[firstChild[p]] = n;
+		firstChild[p] = n;
+	}
+
+	private void unlink(int n) {
+		int p = parent[n];
+		if (p < 0) return;
+		if (prevSibling[n] >= 0)
+			nextSibling[prevSibling[n]] = nextSibling[n];
+		else
+			firstChild[p] = nextSibling[n];
+		if (nextSibling[n] >= 0)
+			prevSibling[nextSibling[n]] = prevSibling[n];
+	}
+}
@@ -1,45 +1,134 @@
 package routing.util;
 
-import java.util.ArrayList;
-
-import utility.lib.Lists;
-
 /**
  * A simple forest interface that allows to get paths between nodes and their roots.
  * The "forest" may or may not be a single tree.
+ * The forest is a view of the given parents array, which is not copied.
+ * Depths, roots and an Euler tour (entry/exit times) are precomputed, so
+ * ancestor tests take O(1) and paths through the forest are written in
+ * time linear in their length. Whoever changes the parents afterwards
+ * refreshes them (see ShortestPathTreeRepair).
  */
 public class SpanningForest {
-	
+
 	protected int[] parent;
-	
+	private int[] depth, root, enter, exit;
+
 	public SpanningForest(int[] parents) {
 		this.parent = parents;
+		int size = parent.length;
+		depth = new int[size];
+		root = new int[size];
+		enter = new int[size];
+		exit = new int[size];
+		index();
 	}
-	
-	public int[] getPathFrom(int node, boolean includeRoot) {
-		ArrayList<Integer> path = new ArrayList<>();
-		int n = node;
-		while (n >= 0) {
-			path.add(n);
-			n = parent[n];
-		}
-		if (!includeRoot) {
-			path.remove(path.size() - 1);
+
+	/** Recomputes depths, roots and the Euler tour (iterative DFS) after the parents changed **/
+	void index() {
+		int size = parent.length;
+
+		// children of each node in CSR form
+		int[] begin = new int[size + 1], children = new int[size];
+		for (int n = 0; n < size; n++)
+			if (parent[n] >= 0) begin[parent[n] + 1]++;
+		for (int n = 0; n < size; n++)
+			begin[n + 1] += begin[n];
+		int[] next = begin.clone();
+		for (int n = 0; n < size; n++)
+			if (parent[n] >= 0) children[next[parent[n]]++] = n;
+
+		int[] stack = new int[size], position = new int[size];
+		int time = 0;
+		for (int r = 0; r < size; r++) {
+			if (parent[r] >= 0) continue;
+			int top = 0;
+			stack[0] = r;
+			position[r] = begin[r];
+			root[r] = r;
+			depth[r] = 0;
+			enter[r] = time++;
+			while (top >= 0) {
+				int n = stack[top];
+				if (position[n] < begin[n + 1]) {
+					int child = children[position[n]++];
+					depth[child] = depth[n] + 1;
+					root[child] = r;
+					position[child] = begin[child];
+					enter[child] = time++;
+					stack[++top] = child;
+				} else {
+					exit[n] = time++;
+					top--;
+				}
+			}
 		}
-		return Lists.array(path);
 	}
-	
+
+	public int[] getPathFrom(int node, boolean includeRoot) {
+		int length = depth[node] + (includeRoot ? 1 : 0);
+		int[] path = new int[length];
+		for (int i = 0, n = node; i < length; i++, n = parent[n])
+			path[i] = n;
+		return path;
+	}
+
 	public int[] getPathTo(int node, boolean includeRoot) {
-		int[] path = getPathFrom(node, includeRoot);
-		return (path == null) ? null : Lists.revert(path);
+		int length = depth[node] + (includeRoot ? 1 : 0);
+		int[] path = new int[length];
+		for (int i = length - 1, n = node; i >= 0; i--, n = parent[n])
+			path[i] = n;
+		return path;
 	}
-	
+
+	/**
+	 * Writes the path from a source up to its root in the 'up' forest and
+	 * down to a target in the 'down' forest into a buffer, cut short at the
+	 * first node of the upward part which is on the downward part.
+	 * Gives the same path as Lists.shortenPath(Lists.concat(
+	 * up.getPathFrom(source, true), down.getPathTo(target, includeRoot))).
+	 * @param buffer for the path, the number of nodes of the graph suffices
+	 * @return length of the path
+	 */
+	public static int getShortcutPath(SpanningForest up, SpanningForest down,
+			int source, int target, boolean includeRoot, int[] buffer) {
+		int length = 0, meet = -1;
+		for (int n = source; n >= 0; n = up.parent[n]) {
+			buffer[length++] = n;
+			if (down.isAncestor(n, target) && (includeRoot || n != down.root[target])) {
+				meet = n;
+				break;
+			}
+		}
+		// downward part below the meeting node (or the whole path to the target)
+		int downLength = (meet >= 0)
+			? down.depth[target] - down.depth[meet]
+			: down.depth[target] + (includeRoot ? 1 : 0);
+		for (int i = length + downLength - 1, n = target; i >= length; i--, n = down.parent[n])
+			buffer[i] = n;
+		return length + downLength;
+	}
+
+	/** Whether a node is an ancestor of (or equal to) another node **/
+	public boolean isAncestor(int ancestor, int node) {
+		return enter[ancestor] <= enter[node] && exit[node] <= exit[ancestor];
+	}
+
+	/** Number of hops to the root **/
+	public int getDepth(int node) {
+		return depth[node];
+	}
+
+	public int getRoot(int node) {
+		return root[node];
+	}
+
 	public int getNextHop(int node) {
 		return parent[node];
 	}
-	
+
 	public int[] getForest() {
 		return parent;
 	}
-	
+
 }
@@ -1,15 +1,14 @@
 package routing.util;
 
-import java.util.PriorityQueue;
 import java.util.function.Consumer;
-import java.util.stream.IntStream;
 
 import core.Simulation;
+import core.event.CompactMessage;
 import core.event.Event;
-import core.event.Message;
-import graph.Channel;
 import graph.Node;
-import routing.costs.RoutingCosts;
+import graph.Topology;
+import routing.costs.WeightTable;
+import utility.global.Config;
 import utility.lib.Lists;
 
 /**
@@ -18,35 +17,63 @@ import utility.lib.Lists;
  */
 public class SpanningForestGenerator {
 
+	/**
+	 * A flooding message for MST generation
+	 * (compact, arg = partition and value = distance of the sender)
+	 */
+	public static final int TREE_UPDATE = CompactMessage.register(
+		"SpanningForestGenerator.TreeUpdate", SpanningForestGenerator::receiveUpdate);
+
 	private Simulation sim;
-	private RoutingCosts costs;
+	private WeightTable weights;
 	private int size;
 	private int[] roots, parent, partition;
 	private long[] distance;
 	private Consumer<SpanningForest> handler;
+	private float startTime;
+	private float[] convergence;
 
 	/**
 	 * A distributed (minimal) spanning tree forest generator (every node
 	 * stores next hop in the direction of the closest root node)
 	 */
-	public SpanningForestGenerator(Simulation sim, RoutingCosts costs,
+	public SpanningForestGenerator(Simulation sim, WeightTable weights,
 			int[] roots, Consumer<SpanningForest> handler) {
 		this.sim = sim;
-		this.costs = costs;
+		this.weights = weights;
 		this.size = sim.graph().size();	
 		this.roots = roots;
 		this.parent = Lists.initIntArray(size, -1);
 		this.partition = Lists.initIntArray(size, -1);
 		this.distance = Lists.initLongArray(size, Integer.MAX_VALUE);
 		this.handler = handler;
-		//createInstantly(); // TODO: switch to traffic creation
-		createByTraffic();
+		this.startTime = sim.getTime();
+		this.convergence = new float[size];
+		// "traffic" (flooding messages), "hybrid" (replayed flooding) or "instant"
+		String mode = Config.get("TREE_CONSTRUCTION");
+		if ("instant".equals(mode)) {
+			createInstantly();
+		} else if ("hybrid".equals(mode)) {
+			createHybrid();
+		} else {
+			createByTraffic();
+		}
 	}
 	
 	public SpanningForest getTree() {
 		return new SpanningForest(parent);
 	}
 	
+	/** Repair facility for the created tree (on copies of its arrays), call after creation **/
+	public ShortestPathTreeRepair getRepair() {
+		return new ShortestPathTreeRepair(sim, weights, parent.clone(), distance.clone(), partition.clone());
+	}
+	
+	/** Time after the start at which each node got its final update (traffic and hybrid mode) **/
+	public float[] getConvergenceTimes() {
+		return convergence;
+	}
+	
 	public long[] getDistances() {
 		return distance;
 	}
@@ -59,26 +86,27 @@ public class SpanningForestGenerator {
 	public void createInstantly() {
 		// modified Dijkstra algorithm
 		boolean[] visited = Lists.initBoolArray(size, false);
-		PriorityQueue<Integer> heap = new PriorityQueue<>((id1, id2) -> (int) (distance[id1] - distance[id2]));	
+		Topology topology = sim.graph().topology();
+		IndexedHeap heap = new IndexedHeap(size);
 		for (int root : roots) {
 			distance[root] = 0;
 			partition[root] = root;
-			heap.add(root);
+			heap.push(root, 0);
 		}	
 		while (!heap.isEmpty()) {
 			int n1 = heap.poll();
 			visited[n1] = true;
 			Node node = sim.graph().node(n1);
 			if (node.hasRole(Node.ROLE_CONSUMER)) continue;	
-			for (Channel ch : node.channels()) {
-				int n2 = ch.getOtherNode(n1);
+			for (int i = topology.begin(n1); i < topology.end(n1); i++) {
+				int n2 = topology.neighbor(i);
 				if (!visited[n2]) {
-					long dist = distance[n1] + costs.getCosts(ch, n1);
+					long dist = distance[n1] + TreeWeights.toNeighbor(weights, topology, i);
 					if (dist < distance[n2]) {
 						parent[n2] = n1;
 						distance[n2] = dist;
 						partition[n2] = partition[n1];
-						heap.add(n2);
+						heap.push(n2, dist);
 					}
 				}
 			}
@@ -89,42 +117,68 @@ public class SpanningForestGenerator {
 	/** Network traffic based creation of spanning tree with flooding **/
 	public void createByTraffic() {
 		for (int root : roots)
-			new TreeUpdate(0).send(-1, root, sim);
-		Event.make(() -> handler.accept(getTree())).after(10, sim);
+			sim.sendMessage(TREE_UPDATE, this, -1, root, root, 0);
+		// late flooding messages may still change the parents, so hand over a copy
+		Event.make(() -> handler.accept(new SpanningForest(parent.clone()))).after(10, sim);
+	}
+	
+	/**
+	 * Computes the result of the flooding centrally and only schedules
+	 * the final event, which reports the number of messages it replaces
+	 */
+	public void createHybrid() {
+		FloodReplay replay = new FloodReplay(sim, weights, distance, parent, partition);
+		replay.run(roots);
+		convergence = replay.getConvergenceTimes();
+		new TreeComplete(replay.getMessages()).after(10, sim);
 	}
 	
-	/** A flooding message for MST generation **/
-	public class TreeUpdate extends Message {
-		private long distSender;
-		public TreeUpdate(long distSender) {
-			this.distSender = distSender;
+	/** Hands the forest to the handler after a hybrid construction **/
+	public class TreeComplete extends Event {
+		private long messages;
+		public TreeComplete(long messages) {
+			this.messages = messages;
 		}
 		@Override
 		public void run() {
-			Node nodeObj = sim.graph().node(node);		
-			boolean propagate = false;
-			if (sender < 0) {
-				// root node special case
-				distance[node] = 0;
-				partition[node] = node;
+			handler.accept(getTree());
+		}
+		/** Number of TreeUpdate messages the flooding would have sent **/
+		public long getMessages() {
+			return messages;
+		}
+	}
+	
+	/** Handles a TreeUpdate arriving at a node **/
+	private void receiveUpdate(int node, int sender, int partSender, long distSender) {
+		Node nodeObj = sim.graph().node(node);		
+		boolean propagate = false;
+		if (sender < 0) {
+			// root node special case
+			distance[node] = 0;
+			convergence[node] = sim.getTime() - startTime;
+			partition[node] = node;
+			propagate = true;
+		} else {
+			// relaxate edge
+			long dist = distSender + TreeWeights.between(weights, sim.graph(), sender, node);
+			if (dist < distance[node]) {
+				parent[node] = sender;
+				distance[node] = dist;
+				convergence[node] = sim.getTime() - startTime;
+				partition[node] = partSender;
 				propagate = true;
-			} else {
-				// relaxate edge
-				long dist = distSender + costs.getCosts(nodeObj.getChannelTo(sender), node);
-				if (dist < distance[node]) {
-					parent[node] = sender;
-					distance[node] = dist;
-					partition[node] = partition[sender];
-					propagate = true;
-				}
 			}
-			// consumers are always leaves
-			if (nodeObj.hasRole(Node.ROLE_CONSUMER))
-				propagate = false;
-			// update neighbors
-			if (propagate)
-				IntStream.of(nodeObj.neighbors()).filter(id -> id != sender)
-					.forEach(id -> new TreeUpdate(distance[node]).send(node, id, sim));
+		}
+		// consumers are always leaves
+		if (nodeObj.hasRole(Node.ROLE_CONSUMER))
+			propagate = false;
+		// update neighbors
+		if (propagate) {
+			Topology topology = sim.graph().topology();
+			for (int i = topology.begin(node); i < topology.end(node); i++)
+				if (topology.neighbor(i) != sender)
+					sim.sendMessage(TREE_UPDATE, this, node, topology.neighbor(i), partition[node], distance[node]);
 		}
 	}
 
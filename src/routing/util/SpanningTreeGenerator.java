@@ -1,66 +1,90 @@
 package routing.util;
 
-import java.util.PriorityQueue;
 import java.util.function.Consumer;
-import java.util.stream.IntStream;
 
 import core.Simulation;
+import core.event.CompactMessage;
 import core.event.Event;
-import core.event.Message;
-import graph.Channel;
 import graph.Node;
-import routing.costs.RoutingCosts;
+import graph.Topology;
+import routing.costs.WeightTable;
+import utility.global.Config;
 import utility.lib.Lists;
 
 /** A distributed (minimal) spanning tree generator (every node stores next hop) **/
 public class SpanningTreeGenerator {
 
+	/** A flooding message for MST generation (compact, value = distance of the sender) **/
+	public static final int TREE_UPDATE = CompactMessage.register(
+		"SpanningTreeGenerator.TreeUpdate", SpanningTreeGenerator::receiveUpdate);
+
 	private Simulation sim;
-	private RoutingCosts costs;
+	private WeightTable weights;
 	private int size, root;
 	private long[] distance;
 	private int[] parent;
 	private Consumer<SpanningForest> handler;
+	private float startTime;
+	private float[] convergence;
 
 	/** A distributed  (minimal) spanning tree generator (every node stores next hop) **/
-	public SpanningTreeGenerator(Simulation sim, RoutingCosts costs,
+	public SpanningTreeGenerator(Simulation sim, WeightTable weights,
 			int root, Consumer<SpanningForest> handler) {
 		this.sim = sim;
-		this.costs = costs;
+		this.weights = weights;
 		this.size = sim.graph().size();	
 		this.root = root;
 		this.parent = Lists.initIntArray(size, -1);
 		this.distance = Lists.initLongArray(size, Integer.MAX_VALUE);
 		this.handler = handler;
-		//createInstantly(); // TODO: switch to traffic creation
-		createByTraffic();
+		this.startTime = sim.getTime();
+		this.convergence = new float[size];
+		// "traffic" (flooding messages), "hybrid" (replayed flooding) or "instant"
+		String mode = Config.get("TREE_CONSTRUCTION");
+		if ("instant".equals(mode)) {
+			createInstantly();
+		} else if ("hybrid".equals(mode)) {
+			createHybrid();
+		} else {
+			createByTraffic();
+		}
 	}
 	
 	public SpanningForest getTree() {
 		return new SpanningForest(parent);
 	}
 	
+	/** Repair facility for the created tree (on copies of its arrays), call after creation **/
+	public ShortestPathTreeRepair getRepair() {
+		return new ShortestPathTreeRepair(sim, weights, parent.clone(), distance.clone(), null);
+	}
+	
+	/** Time after the start at which each node got its final update (traffic and hybrid mode) **/
+	public float[] getConvergenceTimes() {
+		return convergence;
+	}
+	
 	/** Creates the spanning tree without using messaging **/
 	public void createInstantly() {
 		// Dijkstra algorithm
 		boolean[] visited = Lists.initBoolArray(size, false);
-		PriorityQueue<Integer> heap = new PriorityQueue<>(
-			(id1, id2) -> (int) (distance[id1] - distance[id2]));
+		Topology topology = sim.graph().topology();
+		IndexedHeap heap = new IndexedHeap(size);
 		distance[root] = 0;
-		heap.add(root);
+		heap.push(root, 0);
 		while (!heap.isEmpty()) {
 			int n1 = heap.poll();
 			visited[n1] = true;
 			Node node = sim.graph().node(n1);
 			if (node.hasRole(Node.ROLE_CONSUMER)) continue;
-			for (Channel ch : sim.graph().node(n1).channels()) {
-				int n2 = ch.getOtherNode(n1);
+			for (int i = topology.begin(n1); i < topology.end(n1); i++) {
+				int n2 = topology.neighbor(i);
 				if (!visited[n2]) {
-					long dist = distance[n1] + costs.getCosts(ch, n1);
+					long dist = distance[n1] + TreeWeights.toNeighbor(weights, topology, i);
 					if (dist < distance[n2]) {
 						parent[n2] = n1;
 						distance[n2] = dist;
-						heap.add(n2);
+						heap.push(n2, dist);
 					}
 				}
 			}
@@ -70,41 +94,66 @@ public class SpanningTreeGenerator {
 	
 	/** Network traffic based creation of spanning tree with flooding **/
 	public void createByTraffic() {
-		new TreeUpdate(0).send(-1, root, sim);
-		Event.make(() -> handler.accept(getTree())).after(10, sim);
+		sim.sendMessage(TREE_UPDATE, this, -1, root, 0, 0);
+		// late flooding messages may still change the parents, so hand over a copy
+		Event.make(() -> handler.accept(new SpanningForest(parent.clone()))).after(10, sim);
 	}
-
-	/** A flooding message for MST generation **/
-	public class TreeUpdate extends Message {
-		private long distSender;
-		public TreeUpdate(long distSender) {
-			this.distSender = distSender;
+	
+	/**
+	 * Computes the result of the flooding centrally and only schedules
+	 * the final event, which reports the number of messages it replaces
+	 */
+	public void createHybrid() {
+		FloodReplay replay = new FloodReplay(sim, weights, distance, parent, null);
+		replay.run(new int[] {root});
+		convergence = replay.getConvergenceTimes();
+		new TreeComplete(replay.getMessages()).after(10, sim);
+	}
+	
+	/** Hands the tree to the handler after a hybrid construction **/
+	public class TreeComplete extends Event {
+		private long messages;
+		public TreeComplete(long messages) {
+			this.messages = messages;
 		}
 		@Override
 		public void run() {
-			Node nodeObj = sim.graph().node(node);
-			boolean propagate = false;
-			if (sender < 0) {
-				// root node special case
-				distance[node] = 0;
+			handler.accept(getTree());
+		}
+		/** Number of TreeUpdate messages the flooding would have sent **/
+		public long getMessages() {
+			return messages;
+		}
+	}
+
+	/** Handles a TreeUpdate arriving at a node **/
+	private void receiveUpdate(int node, int sender, int arg, long distSender) {
+		Node nodeObj = sim.graph().node(node);
+		boolean propagate = false;
+		if (sender < 0) {
+			// root node special case
+			distance[node] = 0;
+			convergence[node] = sim.getTime() - startTime;
+			propagate = true;
+		} else {
+			// relaxate edge
+			long dist = distSender + TreeWeights.between(weights, sim.graph(), sender, node);
+			if (dist < distance[node]) {
+				parent[node] = sender;
+				distance[node] = dist;
+				convergence[node] = sim.getTime() - startTime;
 				propagate = true;
-			} else {
-				// relaxate edge
-				long dist = distSender + costs.getCosts(nodeObj.getChannelTo(sender), node);
-				if (dist < distance[node]) {
-					parent[node] = sender;
-					distance[node] = dist;
-					propagate = true;
-				}
 			}
-			// consumers are always leaves
-			if (nodeObj.hasRole(Node.ROLE_CONSUMER))
-				propagate = false;
-			// update neighbors
-			if (propagate)			
-				IntStream.of(nodeObj.neighbors())
-					.filter(id -> id != sender)
-					.forEach(id -> new TreeUpdate(distance[node]).send(node, id, sim));
+		}
+		// consumers are always leaves
+		if (nodeObj.hasRole(Node.ROLE_CONSUMER))
+			propagate = false;
+		// update neighbors
+		if (propagate) {
+			Topology topology = sim.graph().topology();
+			for (int i = topology.begin(node); i < topology.end(node); i++)
+				if (topology.neighbor(i) != sender)
+					sim.sendMessage(TREE_UPDATE, this, node, topology.neighbor(i), 0, distance[node]);
 		}
 	}
 
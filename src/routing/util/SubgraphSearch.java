@@ -0,0 +1,129 @@
+package routing.util;
+
+import java.util.Arrays;
+
+import graph.Channel;
+import graph.Graph;
+
+/**
+ * Shortest (fewest hops) path searches on the subgraph formed by a set of
+ * channels, e.g. the channels a node knows. The search only touches the
+ * given channels and their end points instead of scanning the neighbors
+ * of every reached node in the full graph. Add the channels after clear(),
+ * then search; duplicates are ignored.
+ * @author Josua
+ */
+public class SubgraphSearch {
+
+	private final Graph graph;
+	// stamps of added channels and of nodes with a local index
+	private final int[] channelStamp, nodeStamp, local;
+	private int stamp;
+	// added channels as end point pairs
+	private int[] ends = new int[64];
+	private int channelCount;
+	// local graph (CSR) and search state
+	private int[] nodes = new int[32], begin = new int[33], adjacency = new int[64],
+		queue = new int[32], prev = new int[32];
+
+	public SubgraphSearch(Graph graph) {
+		this.graph = graph;
+		channelStamp = new int[graph.channels().size()];
+		nodeStamp = new int[graph.size()];
+		local = new int[graph.size()];
+	}
+
+	/** Starts a new channel set **/
+	public void clear() {
+		if (++stamp == Integer.MAX_VALUE) {
+			Arrays.fill(channelStamp, 0);
+			Arrays.fill(nodeStamp, 0);
+			stamp = 1;
+		}
+		channelCount = 0;
+	}
+
+	public void add(Channel ch) {
+		add(ch.getID(), ch.getNode1(), ch.getNode2());
+	}
+
+	public void add(int channel) {
+		Channel ch = graph.channel(channel);
+		add(channel, ch.getNode1(), ch.getNode2());
+	}
+
+	private void add(int channel, int node1, int node2) {
+		if (channelStamp[channel] == stamp) return;
+		channelStamp[channel] = stamp;
+		if (2 * channelCount + 2 > ends.length)
+			ends = Arrays.copyOf(ends, 2 * ends.length);
+		ends[2 * channelCount] = node1;
+		ends[2 * channelCount + 1] = node2;
+		channelCount++;
+	}
+
+	/**
+	 * Finds a path with the fewest hops over the added channels
+	 * (breadth first search from the target)
+	 * @return nodes from source to target, null if there is none
+	 */
+	public int[] findPath(int source, int target) {
+		if (source == target) return new int[] { source };
+		int count = index();
+		if (nodeStamp[source] != stamp || nodeStamp[target] != stamp) return null;
+		int s = local[source], t = local[target];
+		Arrays.fill(prev, 0, count, -2);
+		prev[t] = -1;
+		queue[0] = t;
+		for (int head = 0, tail = 1; head < tail && prev[s] == -2; head++) {
+			int n = queue[head];
+			for (int i = begin[n]; i < begin[n + 1]; i++) {
+				int next = adjacency[i];
+				if (prev[next] == -2) {
+					prev[next] = n;
+					queue[tail++] = next;
+				}
+			}
+		}
+		if (prev[s] == -2) return null;
+		int length = 1;
+		for (int n = s; prev[n] >= 0; n = prev[n])
+			length++;
+		int[] path = new int[length];
+		for (int i = 0, n = s; n >= 0; i++, n = prev[n])
+			path[i] = nodes[n];
+		return path;
+	}
+
+	/** Assigns local indices to the end points and builds the adjacency, returns the node count **/
+	private int index() {
+		int count = 0;
+		for (int i = 0; i < 2 * channelCount; i++) {
+			int node = ends[i];
+			if (nodeStamp[node] != stamp) {
+				nodeStamp[node] = stamp;
+				if (count == nodes.length) {
+					nodes = Arrays.copyOf(nodes, 2 * count);
+					queue = new int[2 * count];
+					prev = new int[2 * count];
+					begin = new int[2 * count + 1];
+				}
+				local[node] = count;
+				nodes[count++] = node;
+			}
+		}
+		if (adjacency.length < 2 * channelCount)
+			adjacency = new int[Math.max(2 * channelCount, 2 * adjacency.length)];
+		// degrees, summed up to the end of each node's neighbors
+		Arrays.fill(begin, 0, count + 1, 0);
+		for (int i = 0; i < 2 * channelCount; i++)
+			begin[local[ends[i]]]++;
+		for (int n = 1; n < count; n++)
+			begin[n] += begin[n - 1];
+		begin[count] = 2 * channelCount;
+		// filling backwards moves begin[n] to the start of n's neighbors
+		for (int i = 2 * channelCount - 1; i >= 0; i--)
+			adjacency[--begin[local[ends[i]]]] = local[ends[i ^ 1]];
+		return count;
+	}
+}
@@ -0,0 +1,11 @@
+package routing.util;
+
+/** How landmark routing keeps its trees up to date **/
+public enum TreeMaintenance {
+	/** Periodically replaces one landmark by a new one with new trees **/
+	REBUILD,
+	/** Periodically repairs the trees of one landmark, keeping its root **/
+	REPAIR,
+	/** Repairs all trees before path finding when routing costs changed **/
+	CONTINUOUS_REPAIR
+}
@@ -0,0 +1,35 @@
+package routing.util;
+
+import graph.Graph;
+import graph.Topology;
+import routing.costs.WeightTable;
+
+/**
+ * Edge weights of the shortest path trees/forests: the edge from a node to
+ * its child weighs the child's routing costs of their channel, which is the
+ * channel Graph.channel() returns for parallel channels. The generators in
+ * all construction modes and the repair take their weights from here, so
+ * they build and maintain trees of the same metric.
+ * @author Josua
+ */
+final class TreeWeights {
+
+	private TreeWeights() {}
+
+	/** Weight of the tree edge from a parent to a child **/
+	static long between(WeightTable weights, Graph graph, int parent, int child) {
+		return weights.get(graph.channel(child, parent), child);
+	}
+
+	/** Weight of the tree edge from a node to the neighbor of one of its adjacency entries **/
+	static long toNeighbor(WeightTable weights, Topology topology, int i) {
+		int j = topology.indexed(i);
+		return weights.get(topology.channel(j), topology.isNode1(j) ? 1 : 0);
+	}
+
+	/** Weight of the tree edge from the neighbor of an adjacency entry to its node **/
+	static long fromNeighbor(WeightTable weights, Topology topology, int i) {
+		int j = topology.indexed(i);
+		return weights.get(topology.channel(j), topology.isNode1(j) ? 0 : 1);
+	}
+}
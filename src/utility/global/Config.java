@@ -9,10 +9,15 @@ import java.util.HashMap;
 public class Config {
 
 	private static HashMap<String, String> overwrite = new HashMap<String, String>();
+	/** per-thread values, shadowing the global ones (e.g. the output directory of a run) **/
+	private static ThreadLocal<HashMap<String, String>> local = ThreadLocal.withInitial(HashMap::new);
 	
 	private Config() {}
 	
 	public static String get(String key) {
+		HashMap<String, String> values = local.get();
+		if (!values.isEmpty() && values.containsKey(key))
+			return values.get(key);
 		return overwrite.get(key);
 	}
 	
@@ -32,6 +37,16 @@ public class Config {
 		overwrite.put(key, String.valueOf(value));
 	}
 	
+	/** Sets a value only for the current thread **/
+	public static void setLocal(String key, String value) {
+		local.get().put(key, value);
+	}
+	
+	/** Removes all values set for the current thread **/
+	public static void clearLocal() {
+		local.get().clear();
+	}
+	
 	public static boolean getBoolean(String key) {
 		return Boolean.parseBoolean(get(key));
 	}
@@ -3,7 +3,7 @@ package utility.global;
 /** Tool for measuring elapsed real time **/
 public class StopWatch {
 
-	private static long startTime;
+	private static ThreadLocal<Long> startTime = ThreadLocal.withInitial(System::nanoTime);
 	
 	private StopWatch() {}
 	
@@ -13,14 +13,14 @@ public class StopWatch {
 	}
 	
 	public static void start() {
-		startTime = System.nanoTime();
+		startTime.set(System.nanoTime());
 	}
 	
 	public static double measure() {
 		long stopTime = System.nanoTime();
-		double runtime =  (stopTime - startTime) / 1000000.0;
+		double runtime =  (stopTime - startTime.get()) / 1000000.0;
 		System.out.println(" (Runtime: " + runtime + "ms)");
-		startTime = stopTime;
+		startTime.set(stopTime);
 		return runtime;
 	}
 	
@@ -0,0 +1,169 @@
+package utility.lib;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Hash map with primitive int keys (open addressing, linear probing),
+ * avoiding the boxed keys and entry objects of HashMap<Integer, V>.
+ * Iterating over it gives the values.
+ * @author Josua
+ */
+public class IntHashMap<V> implements Iterable<V> {
+
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private int[] keys;
+	private V[] values;
+	private int size;
+
+	public IntHashMap() {
+		this(4);
+	}
+
+	public IntHashMap(int expectedSize) {
+		allocate(Math.max(4, Integer.highestOneBit(Math.max(1, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1));
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean containsKey(int key) {
+		return values[slot(key)] != null;
+	}
+
+	/** Value of a key, null if none **/
+	public V get(int key) {
+		return values[slot(key)];
+	}
+
+	/** Maps a key to a (non-null) value, returns the previous one **/
+	public V put(int key, V value) {
+		if (value == null)
+			throw new IllegalArgumentException("Null values are not supported");
+		int i = slot(key);
+		V old = values[i];
+		keys[i] = key;
+		values[i] = value;
+		if (old == null && ++size > LOAD_FACTOR * keys.length)
+			rehash(2 * keys.length);
+		return old;
+	}
+
+	/** Removes a key, returns its value **/
+	public V remove(int key) {
+		int i = slot(key);
+		V old = values[i];
+		if (old != null)
+			removeAt(i);
+		return old;
+	}
+
+	/** Removes all values matching a filter, returns their number **/
+	public int removeIf(Predicate<V> filter) {
+		int removed = 0;
+		for (int i = 0; i < values.length; ) {
+			// removal shifts later entries into slot i, so check it again
+			if (values[i] != null && filter.test(values[i])) {
+				removeAt(i);
+				removed++;
+			} else {
+				i++;
+			}
+		}
+		return removed;
+	}
+
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	public Stream<V> values() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	@Override
+	public Iterator<V> iterator() {
+		return new Iterator<V>() {
+			private int next = advance(0);
+
+			private int advance(int i) {
+				while (i < values.length && values[i] == null) i++;
+				return i;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next < values.length;
+			}
+
+			@Override
+			public V next() {
+				if (!hasNext()) throw new NoSuchElementException();
+				V value = values[next];
+				next = advance(next + 1);
+				return value;
+			}
+		};
+	}
+
+	/** Slot of a key, or the empty slot where it would be inserted **/
+	private int slot(int key) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (values[i] != null && keys[i] != key)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	/** Empties a slot, moving later entries of the probe sequence forward **/
+	private void removeAt(int i) {
+		int mask = keys.length - 1;
+		values[i] = null;
+		size--;
+		for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+			int home = hash(keys[j]) & mask;
+			// move if the entry's home is not within (i, j]
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				values[j] = null;
+				i = j;
+			}
+		}
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		V[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				int j = slot(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = (V[]) new Object[capacity];
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,126 @@
+package utility.lib;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive ints (open addressing, linear probing). The elements
+ * are also kept in a dense array, so they can be accessed by index,
+ * e.g. for picking a random one; removal moves the last element into
+ * the gap.
+ * @author Josua
+ */
+public class IntHashSet {
+
+	private static final float LOAD_FACTOR = 0.5f;
+	private static final int EMPTY = -1;
+
+	private int[] slots; // index into elements, or EMPTY
+	private int[] elements;
+	private int size;
+
+	public IntHashSet() {
+		this(4);
+	}
+
+	public IntHashSet(int expectedSize) {
+		elements = new int[Math.max(2, expectedSize)];
+		allocate(Math.max(4, Integer.highestOneBit(Math.max(1, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1));
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Element at an index (0 to size-1) **/
+	public int get(int index) {
+		if (index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		return elements[index];
+	}
+
+	public boolean contains(int value) {
+		return slots[slot(value)] != EMPTY;
+	}
+
+	/** Adds a value, returns false if it was already contained **/
+	public boolean add(int value) {
+		int i = slot(value);
+		if (slots[i] != EMPTY) return false;
+		if (size == elements.length)
+			elements = Arrays.copyOf(elements, 2 * size);
+		elements[size] = value;
+		slots[i] = size++;
+		if (size > LOAD_FACTOR * slots.length)
+			rehash(2 * slots.length);
+		return true;
+	}
+
+	/** Removes a value, returns false if it was not contained **/
+	public boolean remove(int value) {
+		int i = slot(value);
+		int index = slots[i];
+		if (index == EMPTY) return false;
+		removeSlot(i);
+		// move the last element into the gap
+		int last = elements[--size];
+		if (index < size) {
+			elements[index] = last;
+			slots[slot(last)] = index;
+		}
+		return true;
+	}
+
+	public void clear() {
+		Arrays.fill(slots, EMPTY);
+		size = 0;
+	}
+
+	/** The elements as a new array **/
+	public int[] toArray() {
+		return Arrays.copyOf(elements, size);
+	}
+
+	/** Slot of a value, or the empty slot where it would be inserted **/
+	private int slot(int value) {
+		int mask = slots.length - 1;
+		int i = hash(value) & mask;
+		while (slots[i] != EMPTY && elements[slots[i]] != value)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	/** Empties a slot, moving later entries of the probe sequence forward **/
+	private void removeSlot(int i) {
+		int mask = slots.length - 1;
+		slots[i] = EMPTY;
+		for (int j = (i + 1) & mask; slots[j] != EMPTY; j = (j + 1) & mask) {
+			int home = hash(elements[slots[j]]) & mask;
+			// move if the entry's home is not within (i, j]
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				slots[i] = slots[j];
+				slots[j] = EMPTY;
+				i = j;
+			}
+		}
+	}
+
+	private void rehash(int capacity) {
+		allocate(capacity);
+		for (int index = 0; index < size; index++)
+			slots[slot(elements[index])] = index;
+	}
+
+	private void allocate(int capacity) {
+		slots = new int[capacity];
+		Arrays.fill(slots, EMPTY);
+	}
+
+	private static int hash(int value) {
+		int h = value * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -18,4 +18,15 @@ public class Network {
 		}
 	}
 	
+	/** Sends a new message to all neighbors except the first blacklistSize ones of the blacklist **/
+	public static void flood(int node, int[] blacklist, int blacklistSize, Simulation sim, Function<Integer, Message> message) {
+		for (int neighbor : sim.graph().node(node).neighbors()) {
+			boolean skip = false;
+			for (int i = 0; i < blacklistSize && !skip; i++)
+				skip = blacklist[i] == neighbor;
+			if (!skip)
+				message.apply(neighbor).send(node, neighbor, sim);
+		}
+	}
+	
 }